@@ -0,0 +1,67 @@
+package platypus.util.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Helpers for creating and removing the file trees used by benchmarks.
+ *
+ * @author Jingchen Xu
+ */
+class BenchmarkFiles {
+
+    private BenchmarkFiles() {}
+
+    /**
+     * Creates a tree of small files. Each directory holds the specified number
+     * of files and, above the lowest level, the same number of
+     * sub-directories.
+     *
+     * @param root the directory to create the tree in
+     * @param depth the number of directory levels below the root
+     * @param fanout the number of files and directories in each directory
+     * @throws IOException if the tree cannot be created
+     */
+    static void createTree(Path root, int depth, int fanout)
+            throws IOException {
+
+        for (int i = 0; i < fanout; i++)
+            Files.write(root.resolve("file" + i + ".txt"),
+                    ("content " + i).getBytes("UTF-8"));
+
+        if (depth > 0) {
+            for (int i = 0; i < fanout; i++) {
+                Path dir = Files.createDirectory(root.resolve("dir" + i));
+                createTree(dir, depth - 1, fanout);
+            }
+        }
+    }
+
+    /**
+     * Deletes a directory and everything in it.
+     *
+     * @param root the directory to delete
+     * @throws IOException if the directory cannot be deleted
+     */
+    static void deleteTree(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file,
+                    BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e)
+                    throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,38 @@
+package platypus.util.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler attached, so that allocation rates
+ * are reported alongside timings. Equivalent to running the benchmark jar
+ * with <code>-prof gc</code>.
+ *
+ * @author Jingchen Xu
+ */
+public class BenchmarkRunner {
+
+    private BenchmarkRunner() {}
+
+    /**
+     * Runs the benchmarks.
+     *
+     * @param args regular expressions selecting the benchmarks to run. If
+     *        none are given, all benchmarks are run.
+     * @throws RunnerException if a benchmark cannot be run
+     */
+    public static void main(String[] args) throws RunnerException {
+
+        OptionsBuilder builder = new OptionsBuilder();
+        for (String include : args)
+            builder.include(include);
+        if (args.length == 0)
+            builder.include("platypus\\.util\\.benchmarks\\..*");
+
+        Options options = builder.addProfiler(GCProfiler.class).build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,168 @@
+package platypus.util.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import platypus.util.general.PFileUtils;
+
+/**
+ * Benchmarks the tree walk and user defined attribute methods of
+ * <code>PFileUtils</code>. The attribute benchmarks fail during setup if the
+ * temporary directory's file store does not support user defined attributes.
+ *
+ * @author Jingchen Xu
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileBenchmark {
+
+    /**
+     * A generated directory tree to walk.
+     */
+    @State(Scope.Benchmark)
+    public static class Tree {
+
+        /**
+         * The number of directory levels below the root
+         */
+        @Param({ "2", "4" })
+        public int depth;
+
+        /**
+         * The number of files and directories in each directory
+         */
+        @Param({ "8" })
+        public int fanout;
+
+        private Path root;
+
+        /**
+         * Creates the tree.
+         *
+         * @throws IOException if the tree cannot be created
+         */
+        @Setup
+        public void setUp() throws IOException {
+            root = Files.createTempDirectory("platypus-bench");
+            BenchmarkFiles.createTree(root, depth, fanout);
+        }
+
+        /**
+         * Deletes the tree.
+         *
+         * @throws IOException if the tree cannot be deleted
+         */
+        @TearDown
+        public void tearDown() throws IOException {
+            BenchmarkFiles.deleteTree(root);
+        }
+    }
+
+    /**
+     * A single file carrying user defined attributes.
+     */
+    @State(Scope.Thread)
+    public static class TaggedFile {
+
+        private File file;
+
+        /**
+         * Creates the file and tags it with a few attributes.
+         *
+         * @throws IOException if the file cannot be created
+         */
+        @Setup
+        public void setUp() throws IOException {
+            Path path = Files.createTempFile("platypus-bench", ".txt");
+            if (!Files.getFileStore(path).supportsFileAttributeView(
+                    UserDefinedFileAttributeView.class)) {
+                Files.delete(path);
+                throw new IllegalStateException(
+                        "User defined attributes are not supported in "
+                                + path.getParent());
+            }
+
+            file = path.toFile();
+            for (int i = 0; i < 4; i++)
+                PFileUtils.setUserDefinedFileAttribute(file, "attr" + i,
+                        "value" + i);
+        }
+
+        /**
+         * Deletes the file.
+         *
+         * @throws IOException if the file cannot be deleted
+         */
+        @TearDown
+        public void tearDown() throws IOException {
+            Files.delete(file.toPath());
+        }
+    }
+
+    /**
+     * Benchmarks <code>PFileUtils.deepListFiles()</code>.
+     *
+     * @param tree the tree to walk
+     * @return the files found
+     */
+    @Benchmark
+    public List<File> deepListFiles(Tree tree) {
+        return PFileUtils.deepListFiles(tree.root.toFile());
+    }
+
+    /**
+     * Benchmarks <code>PFileUtils.readUserDefinedFileAttribute()</code>.
+     *
+     * @param tagged the file to read from
+     * @return the attribute value
+     */
+    @Benchmark
+    public String readAttribute(TaggedFile tagged) {
+        return PFileUtils.readUserDefinedFileAttribute(tagged.file, "attr0");
+    }
+
+    /**
+     * Benchmarks <code>PFileUtils.readUserDefinedFileAttributes()</code>.
+     *
+     * @param tagged the file to read from
+     * @return the attribute values
+     */
+    @Benchmark
+    public Map<String, String> readAttributes(TaggedFile tagged) {
+        return PFileUtils.readUserDefinedFileAttributes(tagged.file);
+    }
+
+    /**
+     * Benchmarks <code>PFileUtils.setUserDefinedFileAttribute()</code>.
+     *
+     * @param tagged the file to write to
+     * @return the previous attribute value
+     */
+    @Benchmark
+    public String writeAttribute(TaggedFile tagged) {
+        return PFileUtils.setUserDefinedFileAttribute(tagged.file, "attr1",
+                "value1");
+    }
+}
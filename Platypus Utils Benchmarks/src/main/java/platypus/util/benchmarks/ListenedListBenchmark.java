@@ -0,0 +1,91 @@
+package platypus.util.benchmarks;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import platypus.util.monitoring.ListenedList;
+
+/**
+ * Benchmarks the cost of notifying listeners of <code>ListenedList</code>
+ * modifications.
+ *
+ * @author Jingchen Xu
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListenedListBenchmark {
+
+    /**
+     * The number of listeners attached to the list
+     */
+    @Param({ "0", "1", "8" })
+    public int listeners;
+
+    /**
+     * The number of elements in the list
+     */
+    @Param({ "1000" })
+    public int size;
+
+    private ListenedList<Integer> list;
+
+    /**
+     * Fills the list and attaches listeners which consume each event.
+     *
+     * @param bh the blackhole consuming events
+     */
+    @Setup
+    public void setUp(final Blackhole bh) {
+        list = new ListenedList<Integer>();
+        for (int i = 0; i < size; i++)
+            list.add(i);
+
+        for (int i = 0; i < listeners; i++) {
+            list.addActionListener(new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    bh.consume(e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Benchmarks appending and removing an element, two notifications.
+     *
+     * @return the removed element
+     */
+    @Benchmark
+    public Integer addAndRemove() {
+        list.add(size);
+        return list.remove(size);
+    }
+
+    /**
+     * Benchmarks replacing an element, one notification.
+     *
+     * @return the replaced element
+     */
+    @Benchmark
+    public Integer set() {
+        return list.set(size / 2, size);
+    }
+}
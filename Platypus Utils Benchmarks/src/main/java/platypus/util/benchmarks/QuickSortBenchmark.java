@@ -0,0 +1,110 @@
+package platypus.util.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import platypus.util.general.PListUtils;
+
+/**
+ * Benchmarks <code>PListUtils.quickSort()</code> against
+ * <code>Collections.sort()</code> across input sizes and distributions.
+ *
+ * @author Jingchen Xu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuickSortBenchmark {
+
+    /**
+     * The distribution of the values to be sorted.
+     */
+    public enum Distribution {
+        /** Uniformly random values. */
+        RANDOM,
+        /** Values already in ascending order. */
+        SORTED,
+        /** Values in descending order. */
+        REVERSED,
+        /** Random values drawn from a small set. */
+        DUPLICATES
+    }
+
+    /**
+     * The number of elements to sort
+     */
+    @Param({ "1000", "100000" })
+    public int size;
+
+    /**
+     * The distribution of the elements to sort
+     */
+    @Param
+    public Distribution distribution;
+
+    private List<Integer> input;
+
+    /**
+     * Generates the input list.
+     */
+    @Setup
+    public void setUp() {
+        Random rand = new Random(42);
+        input = new ArrayList<Integer>(size);
+        for (int i = 0; i < size; i++) {
+            switch (distribution) {
+            case SORTED:
+                input.add(i);
+                break;
+            case REVERSED:
+                input.add(size - i);
+                break;
+            case DUPLICATES:
+                input.add(rand.nextInt(16));
+                break;
+            default:
+                input.add(rand.nextInt());
+            }
+        }
+    }
+
+    /**
+     * Sorts a copy of the input with <code>PListUtils.quickSort()</code>.
+     *
+     * @return the sorted copy
+     */
+    @Benchmark
+    public List<Integer> quickSort() {
+        return PListUtils.quickSort(input);
+    }
+
+    /**
+     * Sorts a copy of the input with <code>Collections.sort()</code>.
+     *
+     * @return the sorted copy
+     */
+    @Benchmark
+    public List<Integer> collectionsSort() {
+        List<Integer> output = new ArrayList<Integer>(input);
+        Collections.sort(output);
+        return output;
+    }
+}
@@ -0,0 +1,118 @@
+package platypus.util.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import platypus.util.general.PListUtils;
+
+/**
+ * Benchmarks intersecting sorted ID lists with <code>PListUtils</code>
+ * against the <code>HashSet</code> approach, for inputs of similar and of
+ * very different sizes.
+ *
+ * @author Jingchen Xu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SetOperationBenchmark {
+
+    /**
+     * The number of IDs in the larger input
+     */
+    @Param({ "100000" })
+    public int size;
+
+    /**
+     * The number of IDs in the smaller input
+     */
+    @Param({ "100", "100000" })
+    public int smallSize;
+
+    private long[] large, small;
+
+    private List<Long> largeList, smallList;
+
+    /**
+     * Generates two sorted inputs of distinct IDs.
+     */
+    @Setup
+    public void setUp() {
+        Random rand = new Random(42);
+        large = sortedIds(rand, size);
+        small = sortedIds(rand, smallSize);
+        largeList = toList(large);
+        smallList = toList(small);
+    }
+
+    /**
+     * Intersects the arrays with <code>PListUtils.intersection()</code>.
+     *
+     * @return the intersection
+     */
+    @Benchmark
+    public long[] intersectArrays() {
+        return PListUtils.intersection(large, small);
+    }
+
+    /**
+     * Intersects the lists with <code>PListUtils.intersection()</code>.
+     *
+     * @return the intersection
+     */
+    @Benchmark
+    public List<Long> intersectLists() {
+        return PListUtils.intersection(largeList, smallList, null);
+    }
+
+    /**
+     * Intersects the lists by hashing the larger one.
+     *
+     * @return the intersection
+     */
+    @Benchmark
+    public List<Long> intersectHashSet() {
+        Set<Long> set = new HashSet<Long>(largeList);
+        List<Long> output = new ArrayList<Long>();
+        for (Long id : smallList) {
+            if (set.contains(id))
+                output.add(id);
+        }
+        return output;
+    }
+
+    private static long[] sortedIds(Random rand, int n) {
+        long[] ids = new long[n];
+        for (int i = 0; i < n; i++)
+            ids[i] = rand.nextInt(4 * n);
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    private static List<Long> toList(long[] ids) {
+        List<Long> list = new ArrayList<Long>(ids.length);
+        for (long id : ids)
+            list.add(id);
+        return list;
+    }
+}
@@ -0,0 +1,121 @@
+package platypus.util.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import platypus.util.general.NaturalOrderComparator;
+import platypus.util.general.PStringUtils;
+
+/**
+ * Benchmarks the methods of <code>PStringUtils</code> and natural order
+ * comparison.
+ *
+ * @author Jingchen Xu
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringBenchmark {
+
+    /**
+     * A string mixing digits and other characters
+     */
+    public String mixed = "as09d87123489z/;xclv/4rnmkl;asdivzc9ek929012dasd.9012";
+
+    /**
+     * A sentence to title-case
+     */
+    public String sentence = "the quick brown fox and the lazy dog went to the river as it was warm";
+
+    /**
+     * The first of two names to compare
+     */
+    public String nameA = "chapter12-part2-section10";
+
+    /**
+     * The second of two names to compare
+     */
+    public String nameB = "chapter12-part2-section9";
+
+    /**
+     * Benchmarks <code>PStringUtils.positiveIntValidation()</code>.
+     *
+     * @return the validated string
+     */
+    @Benchmark
+    public String positiveIntValidation() {
+        return PStringUtils.positiveIntValidation(mixed);
+    }
+
+    /**
+     * Benchmarks <code>PStringUtils.extractIntegers()</code>.
+     *
+     * @return the extracted integers
+     */
+    @Benchmark
+    public List<Integer> extractIntegers() {
+        return PStringUtils.extractIntegers(mixed);
+    }
+
+    /**
+     * Benchmarks <code>PStringUtils.titleFormat()</code>.
+     *
+     * @return the formatted string
+     */
+    @Benchmark
+    public String titleFormat() {
+        return PStringUtils.titleFormat(sentence);
+    }
+
+    /**
+     * Benchmarks <code>PStringUtils.titleFormatIgnoreTransitive()</code>.
+     *
+     * @return the formatted string
+     */
+    @Benchmark
+    public String titleFormatIgnoreTransitive() {
+        return PStringUtils.titleFormatIgnoreTransitive(sentence);
+    }
+
+    /**
+     * Benchmarks comparing two names in natural order.
+     *
+     * @return the comparison result
+     */
+    @Benchmark
+    public int naturalOrderCompare() {
+        return NaturalOrderComparator.CASE_INSENSITIVE_NATURAL_ORDER
+                .compare(nameA, nameB);
+    }
+
+    /**
+     * Benchmarks comparing two names by their extracted integers, the approach
+     * replaced by <code>NaturalOrderComparator</code>.
+     *
+     * @return the comparison result
+     */
+    @Benchmark
+    public int extractIntegersCompare() {
+        List<Integer> a = PStringUtils.extractIntegers(nameA);
+        List<Integer> b = PStringUtils.extractIntegers(nameB);
+        for (int i = 0; i < Math.min(a.size(), b.size()); i++) {
+            int c = a.get(i).compareTo(b.get(i));
+            if (c != 0)
+                return c;
+        }
+        return a.size() - b.size();
+    }
+}
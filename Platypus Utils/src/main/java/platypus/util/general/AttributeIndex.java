@@ -0,0 +1,814 @@
+package platypus.util.general;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * An <code>AttributeIndex</code> is a persistent inverted index from user
+ * defined file attribute values to the files carrying them. It answers
+ * equality and prefix queries on attribute values without touching the
+ * files themselves.
+ * <p>
+ * The index covers one or more root directories, which are scanned in
+ * parallel by {@link #build(File)}. Afterwards it is kept current in two
+ * ways: attributes written or deleted through <code>PFileUtils</code> are
+ * applied as they happen, and files changed by other means can be re-read
+ * with {@link #update(File)}. Listeners are sent an <code>ActionEvent</code>
+ * whenever a root is added, so that a monitor can watch the roots and call
+ * {@link #update(File)} for the files which change.
+ * <p>
+ * The index is held in memory and saved by {@link #save()} and
+ * {@link #close()}. Saving appends the attributes of the files changed since
+ * the last save to a log next to the index file, so its cost follows the
+ * number of changes rather than the size of the index. Once the log grows
+ * larger than the index file, the index file is rewritten and the log
+ * discarded. The index file stores the inverted index directly: each
+ * attribute-value pair followed by the paths carrying it.
+ * <p>
+ * Indexes should be closed once they are no longer needed. An index is only
+ * weakly referenced by <code>PFileUtils</code>, so one which is never closed
+ * can still be garbage collected, but its unsaved changes are then lost. All
+ * methods are thread-safe.
+ *
+ * @author Jingchen Xu
+ */
+public class AttributeIndex implements Closeable, PFileUtils.AttributeListener {
+
+    private static final int MAGIC = 0x50415449;
+
+    private static final int VERSION = 1;
+
+    private static final int LOG_MAGIC = 0x5041544C;
+
+    private static final String LOG_SUFFIX = ".log";
+
+    private static final int LOG_HEADER_SIZE = 16;
+
+    // separates attribute names from values in keys; sorts before any text
+    private static final char SEPARATOR = '\u0000';
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final File indexFile;
+
+    private final File logFile;
+
+    private final Set<String> attributes;
+
+    private final int threads;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // attribute + SEPARATOR + value -> paths, guarded by lock
+    private final TreeMap<String, Set<String>> inverted = new TreeMap<String, Set<String>>();
+
+    // path -> attribute -> value, sorted so trees can be removed by prefix,
+    // guarded by lock
+    private final TreeMap<String, Map<String, String>> forward = new TreeMap<String, Map<String, String>>();
+
+    // guarded by lock
+    private final Set<String> roots = new LinkedHashSet<String>();
+
+    // changes since the last save, modified under the write lock, or by
+    // save() under the read lock while holding this
+    private final Set<String> changedPaths = new HashSet<String>();
+
+    private boolean rootsChanged = false;
+
+    // identifies the index file a log belongs to, guarded by this
+    private long generation = 0;
+
+    private final AttributeForwarder forwarder = new AttributeForwarder(this);
+
+    private final List<ActionListener> listeners = new ArrayList<ActionListener>();
+
+    /**
+     * Opens an index of all user defined attributes, loading it from the
+     * index file if it exists.
+     *
+     * @param indexFile the file the index is stored in
+     * @throws IOException if the index file exists but cannot be read
+     */
+    public AttributeIndex(File indexFile) throws IOException {
+        this(indexFile, null, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Opens an index, loading it from the index file if it exists.
+     *
+     * @param indexFile the file the index is stored in
+     * @param attributes the names of the attributes to index, or null to
+     *        index all attributes
+     * @param threads the number of threads to read attributes on when
+     *        scanning
+     * @throws IOException if the index file exists but cannot be read
+     */
+    public AttributeIndex(File indexFile, Collection<String> attributes,
+            int threads) throws IOException {
+
+        if (threads < 1)
+            throw new IllegalArgumentException("Thread count must be positive");
+
+        this.indexFile = indexFile;
+        this.logFile = new File(indexFile.getAbsolutePath() + LOG_SUFFIX);
+        this.attributes = attributes == null ? null
+                : new HashSet<String>(attributes);
+        this.threads = threads;
+
+        if (indexFile.exists())
+            load();
+
+        PFileUtils.addAttributeListener(forwarder);
+    }
+
+    /**
+     * Scans a directory tree and adds it to the index, replacing any entries
+     * previously indexed under it. Attributes are read in parallel.
+     *
+     * @param root the directory to index
+     * @throws IOException if interrupted while scanning
+     */
+    public void build(File root) throws IOException {
+
+        String rootPath = root.getAbsolutePath();
+        final Map<String, Map<String, String>> scanned = new HashMap<String, Map<String, String>>();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> results = new ArrayList<Future<?>>();
+            for (final File file : PFileUtils.deepListFiles(root)) {
+                results.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        Map<String, String> attrs = readAttributes(file);
+                        synchronized (scanned) {
+                            scanned.put(file.getAbsolutePath(), attrs);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> result : results)
+                result.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while scanning");
+        }
+        catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        boolean added;
+        lock.writeLock().lock();
+        try {
+            removeUnder(rootPath);
+            for (Map.Entry<String, Map<String, String>> entry : scanned
+                    .entrySet())
+                putFile(entry.getKey(), entry.getValue());
+            added = roots.add(rootPath);
+            if (added)
+                rootsChanged = true;
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+
+        if (added)
+            notifyListeners(new ActionEvent(this, ActionEvent.ACTION_PERFORMED,
+                    rootPath));
+    }
+
+    /**
+     * Re-reads the attributes of a file, or of every file under a directory,
+     * and updates the index. Files which no longer exist are removed.
+     *
+     * @param file the file or directory which changed
+     */
+    public void update(File file) {
+
+        String path = file.getAbsolutePath();
+        if (!isIndexed(path))
+            return;
+
+        if (!file.exists()) {
+            lock.writeLock().lock();
+            try {
+                removeUnder(path);
+            }
+            finally {
+                lock.writeLock().unlock();
+            }
+        }
+        else if (file.isDirectory()) {
+            List<File> children = PFileUtils.deepListFiles(file);
+
+            // forget indexed files which are no longer present
+            Set<String> present = new HashSet<String>();
+            for (File child : children)
+                present.add(child.getAbsolutePath());
+            String prefix = path + File.separator;
+            lock.writeLock().lock();
+            try {
+                for (String p : new ArrayList<String>(forward.subMap(prefix,
+                        prefix + Character.MAX_VALUE).keySet())) {
+                    if (!present.contains(p))
+                        removeFile(p);
+                }
+            }
+            finally {
+                lock.writeLock().unlock();
+            }
+
+            for (File child : children)
+                update(child);
+        }
+        else {
+            Map<String, String> attrs = readAttributes(file);
+            lock.writeLock().lock();
+            try {
+                removeFile(path);
+                putFile(path, attrs);
+            }
+            finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public void attributeChanged(File file, String attribute, String value) {
+
+        String path = file.getAbsolutePath();
+        if (!isIndexed(path) || !accepts(attribute))
+            return;
+
+        lock.writeLock().lock();
+        try {
+            Map<String, String> attrs = forward.get(path);
+            String previous = attrs == null ? null : attrs.get(attribute);
+            if (previous != null)
+                removeKey(key(attribute, previous), path);
+
+            if (value == null) {
+                if (attrs != null) {
+                    attrs.remove(attribute);
+                    if (attrs.isEmpty())
+                        forward.remove(path);
+                }
+            }
+            else {
+                if (attrs == null) {
+                    attrs = new HashMap<String, String>();
+                    forward.put(path, attrs);
+                }
+                attrs.put(attribute, value);
+                addKey(key(attribute, value), path);
+            }
+            changedPaths.add(path);
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds all indexed files whose attribute has exactly the specified value.
+     *
+     * @param attribute the name of the attribute
+     * @param value the value to match
+     * @return the matching files
+     */
+    public Set<File> find(String attribute, String value) {
+
+        lock.readLock().lock();
+        try {
+            Set<String> paths = inverted.get(key(attribute, value));
+            Set<File> output = new HashSet<File>();
+            if (paths != null) {
+                for (String path : paths)
+                    output.add(new File(path));
+            }
+            return output;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds all indexed files whose attribute value starts with the specified
+     * prefix.
+     *
+     * @param attribute the name of the attribute
+     * @param prefix the prefix to match. The empty string matches every file
+     *        carrying the attribute.
+     * @return the matching files
+     */
+    public Set<File> findByPrefix(String attribute, String prefix) {
+
+        String from = key(attribute, prefix);
+        String to = from + Character.MAX_VALUE;
+
+        lock.readLock().lock();
+        try {
+            Set<File> output = new HashSet<File>();
+            for (Set<String> paths : inverted.subMap(from, to).values()) {
+                for (String path : paths)
+                    output.add(new File(path));
+            }
+            return output;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the indexed attributes of a file.
+     *
+     * @param file the file to look up
+     * @return a map containing the file's indexed attribute-value pairs,
+     *         which is empty if the file is not indexed
+     */
+    public Map<String, String> getAttributes(File file) {
+        lock.readLock().lock();
+        try {
+            Map<String, String> attrs = forward.get(file.getAbsolutePath());
+            return attrs == null ? Collections.<String, String> emptyMap()
+                    : new HashMap<String, String>(attrs);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of indexed files carrying at least one attribute.
+     *
+     * @return the number of files
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return forward.size();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the root directories covered by the index.
+     *
+     * @return the roots, in the order they were added
+     */
+    public List<File> getRoots() {
+        lock.readLock().lock();
+        try {
+            List<File> output = new ArrayList<File>(roots.size());
+            for (String root : roots)
+                output.add(new File(root));
+            return output;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Saves the changes made since the index was last loaded or saved. The
+     * attributes of the changed files are appended to the log, or, if the
+     * log has grown larger than the index file, the index file is replaced
+     * atomically and the log discarded.
+     *
+     * @throws IOException if the index or log file cannot be written
+     */
+    public synchronized void save() throws IOException {
+
+        lock.readLock().lock();
+        try {
+            boolean exists = indexFile.exists();
+            if (exists && changedPaths.isEmpty() && !rootsChanged)
+                return;
+
+            if (!exists || logFile.length() > indexFile.length())
+                writeIndex();
+            else
+                appendLog();
+            changedPaths.clear();
+            rootsChanged = false;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Stops receiving changes from <code>PFileUtils</code> and saves the
+     * index.
+     *
+     * @throws IOException if the index file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        PFileUtils.removeAttributeListener(forwarder);
+        save();
+    }
+
+    /**
+     * Adds an <code>ActionListener</code> to the index. The command of each
+     * event is the absolute path of a root added by {@link #build(File)}.
+     *
+     * @param l the <code>ActionListener</code> to be added
+     */
+    public void addActionListener(ActionListener l) {
+        synchronized (listeners) {
+            listeners.add(l);
+        }
+    }
+
+    /**
+     * Removes an <code>ActionListener</code> from the index.
+     *
+     * @param l the <code>ActionListener</code> to be removed
+     */
+    public void removeActionListener(ActionListener l) {
+        synchronized (listeners) {
+            listeners.remove(l);
+        }
+    }
+
+    private void notifyListeners(ActionEvent e) {
+
+        synchronized (listeners) {
+            for (int i = 0; i < listeners.size(); i++)
+                listeners.get(i).actionPerformed(e);
+        }
+    }
+
+    private void writeIndex() throws IOException {
+
+        File temp = new File(indexFile.getAbsolutePath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temp.toPath())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(generation + 1);
+
+            out.writeInt(roots.size());
+            for (String root : roots)
+                writeString(out, root);
+
+            out.writeInt(inverted.size());
+            for (Map.Entry<String, Set<String>> entry : inverted.entrySet()) {
+                writeString(out, entry.getKey());
+                out.writeInt(entry.getValue().size());
+                for (String path : entry.getValue())
+                    writeString(out, path);
+            }
+        }
+
+        // the new index ignores the old log, so a crash before the log is
+        // deleted is harmless
+        Files.move(temp.toPath(), indexFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        generation++;
+        Files.deleteIfExists(logFile.toPath());
+    }
+
+    /**
+     * Appends one record holding the current attributes of every changed
+     * file, and the roots if they changed.
+     */
+    private void appendLog() throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        if (rootsChanged) {
+            out.writeInt(roots.size());
+            for (String root : roots)
+                writeString(out, root);
+        }
+        else {
+            out.writeInt(-1);
+        }
+        out.writeInt(changedPaths.size());
+        for (String path : changedPaths) {
+            writeString(out, path);
+            Map<String, String> attrs = forward.get(path);
+            if (attrs == null) {
+                out.writeInt(0);
+                continue;
+            }
+            out.writeInt(attrs.size());
+            for (Map.Entry<String, String> entry : attrs.entrySet()) {
+                writeString(out, entry.getKey());
+                writeString(out, entry.getValue());
+            }
+        }
+
+        byte[] record = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(record, 0, record.length);
+        ByteBuffer buf = ByteBuffer.allocate(LOG_HEADER_SIZE + 8
+                + record.length);
+
+        try (FileChannel log = FileChannel.open(logFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            if (log.size() == 0)
+                buf.putInt(LOG_MAGIC).putInt(VERSION).putLong(generation);
+            buf.putInt(record.length).putInt((int) crc.getValue()).put(record);
+            buf.flip();
+
+            log.position(log.size());
+            while (buf.hasRemaining())
+                log.write(buf);
+            log.force(false);
+        }
+    }
+
+    private void load() throws IOException {
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(indexFile.toPath())))) {
+            if (in.readInt() != MAGIC)
+                throw new IOException("Not an attribute index: " + indexFile);
+            int version = in.readInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported attribute index version "
+                        + version + ": " + indexFile);
+            generation = in.readLong();
+
+            int rootCount = in.readInt();
+            for (int i = 0; i < rootCount; i++)
+                roots.add(readString(in));
+
+            int keyCount = in.readInt();
+            for (int i = 0; i < keyCount; i++) {
+                String key = readString(in);
+                int split = key.indexOf(SEPARATOR);
+                String attribute = key.substring(0, split);
+                String value = key.substring(split + 1);
+
+                int pathCount = in.readInt();
+                Set<String> paths = new HashSet<String>(pathCount * 2);
+                for (int j = 0; j < pathCount; j++) {
+                    String path = readString(in);
+                    paths.add(path);
+
+                    Map<String, String> attrs = forward.get(path);
+                    if (attrs == null) {
+                        attrs = new HashMap<String, String>();
+                        forward.put(path, attrs);
+                    }
+                    attrs.put(attribute, value);
+                }
+                inverted.put(key, paths);
+            }
+        }
+
+        replayLog();
+        changedPaths.clear();
+        rootsChanged = false;
+    }
+
+    /**
+     * Applies the log written since the index file, discarding it if it
+     * belongs to an older index file and truncating any torn record at its
+     * end.
+     */
+    private void replayLog() throws IOException {
+
+        if (!logFile.exists())
+            return;
+
+        long valid = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(logFile.toPath())))) {
+
+            if (in.readInt() != LOG_MAGIC || in.readInt() != VERSION)
+                throw new IOException("Not an attribute index log: " + logFile);
+            if (in.readLong() != generation) {
+                in.close();
+                Files.delete(logFile.toPath());
+                return;
+            }
+            valid = LOG_HEADER_SIZE;
+
+            CRC32 crc = new CRC32();
+            while (true) {
+                byte[] record;
+                try {
+                    int length = in.readInt();
+                    int checksum = in.readInt();
+                    if (length <= 0 || length > logFile.length())
+                        break;
+                    record = new byte[length];
+                    in.readFully(record);
+                    crc.reset();
+                    crc.update(record, 0, length);
+                    if ((int) crc.getValue() != checksum)
+                        break;
+                }
+                catch (EOFException e) {
+                    break;
+                }
+
+                applyLogRecord(new DataInputStream(new ByteArrayInputStream(
+                        record)));
+                valid += 8 + record.length;
+            }
+        }
+        catch (EOFException e) {
+            // torn header; the log never held a record
+        }
+
+        try (FileChannel log = FileChannel.open(logFile.toPath(),
+                StandardOpenOption.WRITE)) {
+            if (valid == 0)
+                log.truncate(0);
+            else if (log.size() > valid)
+                log.truncate(valid);
+        }
+    }
+
+    private void applyLogRecord(DataInputStream in) throws IOException {
+
+        int rootCount = in.readInt();
+        if (rootCount >= 0) {
+            roots.clear();
+            for (int i = 0; i < rootCount; i++)
+                roots.add(readString(in));
+        }
+
+        int pathCount = in.readInt();
+        for (int i = 0; i < pathCount; i++) {
+            String path = readString(in);
+            int attrCount = in.readInt();
+            Map<String, String> attrs = new HashMap<String, String>();
+            for (int j = 0; j < attrCount; j++)
+                attrs.put(readString(in), readString(in));
+            removeFile(path);
+            putFile(path, attrs);
+        }
+    }
+
+    private Map<String, String> readAttributes(File file) {
+        Map<String, String> attrs = PFileUtils
+                .readUserDefinedFileAttributes(file);
+        if (attrs == null)
+            return Collections.emptyMap();
+        if (attributes != null)
+            attrs.keySet().retainAll(attributes);
+        return attrs;
+    }
+
+    private boolean accepts(String attribute) {
+        return attributes == null || attributes.contains(attribute);
+    }
+
+    private boolean isIndexed(String path) {
+        lock.readLock().lock();
+        try {
+            for (String root : roots) {
+                if (isUnder(path, root))
+                    return true;
+            }
+            return false;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static boolean isUnder(String path, String root) {
+        return path.equals(root) || path.startsWith(root + File.separator);
+    }
+
+    // the following methods must be called while holding the write lock
+
+    private void putFile(String path, Map<String, String> attrs) {
+        changedPaths.add(path);
+        if (attrs.isEmpty())
+            return;
+        forward.put(path, new HashMap<String, String>(attrs));
+        for (Map.Entry<String, String> entry : attrs.entrySet())
+            addKey(key(entry.getKey(), entry.getValue()), path);
+    }
+
+    private void removeFile(String path) {
+        Map<String, String> attrs = forward.remove(path);
+        if (attrs != null) {
+            changedPaths.add(path);
+            for (Map.Entry<String, String> entry : attrs.entrySet())
+                removeKey(key(entry.getKey(), entry.getValue()), path);
+        }
+    }
+
+    private void removeUnder(String path) {
+        removeFile(path);
+        String prefix = path + File.separator;
+        for (String p : new ArrayList<String>(forward.subMap(prefix,
+                prefix + Character.MAX_VALUE).keySet()))
+            removeFile(p);
+    }
+
+    private void addKey(String key, String path) {
+        Set<String> paths = inverted.get(key);
+        if (paths == null) {
+            paths = new HashSet<String>();
+            inverted.put(key, paths);
+        }
+        paths.add(path);
+    }
+
+    private void removeKey(String key, String path) {
+        Set<String> paths = inverted.get(key);
+        if (paths != null) {
+            paths.remove(path);
+            if (paths.isEmpty())
+                inverted.remove(key);
+        }
+    }
+
+    private static String key(String attribute, String value) {
+        return attribute + SEPARATOR + value;
+    }
+
+    /**
+     * Passes attribute changes to an index without keeping it reachable, and
+     * unregisters itself once the index has been garbage collected.
+     */
+    private static final class AttributeForwarder implements
+            PFileUtils.AttributeListener {
+
+        private final WeakReference<AttributeIndex> index;
+
+        AttributeForwarder(AttributeIndex index) {
+            this.index = new WeakReference<AttributeIndex>(index);
+        }
+
+        @Override
+        public void attributeChanged(File file, String attribute, String value) {
+            AttributeIndex target = index.get();
+            if (target == null)
+                PFileUtils.removeAttributeListener(this);
+            else
+                target.attributeChanged(file, attribute, value);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s)
+            throws IOException {
+        byte[] bytes = s.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+}
@@ -0,0 +1,491 @@
+package platypus.util.general;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A <code>BulkFileTransfer</code> copies or moves many files at once,
+ * carrying their user defined attributes along. Files are copied concurrently
+ * on a fixed number of threads using <code>FileChannel.transferTo()</code>,
+ * which lets the operating system move the data without passing it through
+ * the Java heap. Small files, for which opening two channels costs more than
+ * the copy itself, are copied with <code>Files.copy()</code> instead.
+ * <p>
+ * Each file is first written under a temporary name and renamed once its
+ * contents are complete. Its attributes are then copied and, finally, its
+ * modification time is set to that of its source. By default, a target with
+ * the same size and modification time as its source is assumed to be
+ * identical and skipped, so an interrupted transfer can be resumed by running
+ * it again. The user defined attributes of a skipped target are still
+ * copied from its source, since changing them does not change the
+ * modification time. When moving, the contents of such a target are compared
+ * with its source before the source is deleted.
+ * <p>
+ * Progress is reported to a {@link ProgressListener} after each file.
+ *
+ * @author Jingchen Xu
+ */
+public class BulkFileTransfer {
+
+    /**
+     * Receives progress updates during a transfer.
+     */
+    public interface ProgressListener {
+
+        /**
+         * Called after each file is transferred, skipped or fails. May be
+         * called from several threads, but never concurrently.
+         *
+         * @param source the file just processed
+         * @param progress the progress of the whole transfer so far
+         */
+        void fileProcessed(File source, Progress progress);
+    }
+
+    /**
+     * A snapshot of the progress of a transfer.
+     */
+    public static class Progress {
+
+        private final int totalFiles;
+
+        private final long totalBytes;
+
+        private final int transferredFiles;
+
+        private final int skippedFiles;
+
+        private final int failedFiles;
+
+        private final long transferredBytes;
+
+        private final long elapsedNanos;
+
+        Progress(int totalFiles, long totalBytes, int transferredFiles,
+                int skippedFiles, int failedFiles, long transferredBytes,
+                long elapsedNanos) {
+            this.totalFiles = totalFiles;
+            this.totalBytes = totalBytes;
+            this.transferredFiles = transferredFiles;
+            this.skippedFiles = skippedFiles;
+            this.failedFiles = failedFiles;
+            this.transferredBytes = transferredBytes;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Returns the number of files in the transfer.
+         *
+         * @return the total number of files
+         */
+        public int getTotalFiles() {
+            return totalFiles;
+        }
+
+        /**
+         * Returns the size of all files in the transfer.
+         *
+         * @return the total number of bytes
+         */
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+
+        /**
+         * Returns the number of files copied or moved so far.
+         *
+         * @return the number of files transferred
+         */
+        public int getTransferredFiles() {
+            return transferredFiles;
+        }
+
+        /**
+         * Returns the number of files skipped because their targets were
+         * identical.
+         *
+         * @return the number of files skipped
+         */
+        public int getSkippedFiles() {
+            return skippedFiles;
+        }
+
+        /**
+         * Returns the number of files which could not be transferred.
+         *
+         * @return the number of files failed
+         */
+        public int getFailedFiles() {
+            return failedFiles;
+        }
+
+        /**
+         * Returns the number of bytes copied so far. Skipped files and files
+         * moved by renaming are not counted.
+         *
+         * @return the number of bytes transferred
+         */
+        public long getTransferredBytes() {
+            return transferredBytes;
+        }
+
+        /**
+         * Returns the time since the transfer started.
+         *
+         * @return the elapsed time in nanoseconds
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * Returns the number of bytes copied per second so far.
+         *
+         * @return the throughput in bytes per second
+         */
+        public double getBytesPerSecond() {
+            return elapsedNanos <= 0 ? 0
+                    : (double) transferredBytes * PUnitUtils.NANOSECS_PER_SEC
+                            / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d/%d files (%d skipped, %d failed), %s/%s, %s",
+                    transferredFiles + skippedFiles + failedFiles, totalFiles,
+                    skippedFiles, failedFiles,
+                    PUnitUtils.formatSize(transferredBytes),
+                    PUnitUtils.formatSize(totalBytes),
+                    PUnitUtils.formatThroughput(transferredBytes, elapsedNanos));
+        }
+    }
+
+    /** Files smaller than this are copied with <code>Files.copy()</code>. */
+    public static final long SMALL_FILE_SIZE = 64 * PUnitUtils.BYTES_PER_KIBIBYTE;
+
+    private static final String PARTIAL_SUFFIX = ".part";
+
+    private static final int COMPARE_BUFFER_SIZE = (int) (64 * PUnitUtils.BYTES_PER_KIBIBYTE);
+
+    private final int threads;
+
+    private boolean skipIdentical = true;
+
+    private ProgressListener listener = null;
+
+    private final Object progressLock = new Object();
+
+    // progress of the current transfer, guarded by progressLock
+    private int totalFiles, transferredFiles, skippedFiles, failedFiles;
+
+    private long totalBytes, transferredBytes, startTime;
+
+    /**
+     * Creates a new BulkFileTransfer which uses one thread per processor.
+     */
+    public BulkFileTransfer() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new BulkFileTransfer.
+     *
+     * @param threads the number of files to transfer concurrently
+     */
+    public BulkFileTransfer(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("Thread count must be positive");
+        this.threads = threads;
+    }
+
+    /**
+     * Sets whether targets with the same size and modification time as their
+     * sources are skipped. This is enabled by default. When moving, a source
+     * is only deleted without being transferred if its target also has the
+     * same contents. The user defined attributes of skipped sources are still
+     * copied to their targets.
+     *
+     * @param skipIdentical true to skip identical targets
+     */
+    public void setSkipIdentical(boolean skipIdentical) {
+        this.skipIdentical = skipIdentical;
+    }
+
+    /**
+     * Sets the listener to receive progress updates.
+     *
+     * @param listener the listener, or null to not report progress
+     */
+    public void setProgressListener(ProgressListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Copies a directory tree, preserving its structure under the target
+     * directory.
+     *
+     * @param sourceRoot the directory to copy
+     * @param targetRoot the directory to copy into
+     * @return the final progress of the transfer
+     * @throws IOException if any file could not be copied. Other files are
+     *         still copied.
+     */
+    public Progress copyTree(File sourceRoot, File targetRoot)
+            throws IOException {
+        return transfer(PFileUtils.deepListFiles(sourceRoot), sourceRoot,
+                targetRoot, false);
+    }
+
+    /**
+     * Moves a directory tree, preserving its structure under the target
+     * directory. Files are renamed where possible and copied otherwise.
+     * Directories left empty in the source tree are deleted.
+     *
+     * @param sourceRoot the directory to move
+     * @param targetRoot the directory to move into
+     * @return the final progress of the transfer
+     * @throws IOException if any file could not be moved. Other files are
+     *         still moved.
+     */
+    public Progress moveTree(File sourceRoot, File targetRoot)
+            throws IOException {
+        Progress progress = transfer(PFileUtils.deepListFiles(sourceRoot),
+                sourceRoot, targetRoot, true);
+        deleteEmptyDirectories(sourceRoot);
+        return progress;
+    }
+
+    /**
+     * Copies or moves the specified files, which must all lie within the
+     * source directory, to the same relative paths within the target
+     * directory.
+     *
+     * @param files the files to transfer
+     * @param sourceRoot the directory containing the files
+     * @param targetRoot the directory to transfer the files into
+     * @param move true to move the files, or false to copy them
+     * @return the final progress of the transfer
+     * @throws IOException if any file could not be transferred. Other files
+     *         are still transferred.
+     */
+    public synchronized Progress transfer(Collection<File> files,
+            File sourceRoot, File targetRoot, final boolean move)
+            throws IOException {
+
+        final Path source = sourceRoot.toPath().toAbsolutePath();
+        final Path target = targetRoot.toPath().toAbsolutePath();
+
+        long bytes = 0;
+        for (File file : files)
+            bytes += file.length();
+        synchronized (progressLock) {
+            totalFiles = files.size();
+            totalBytes = bytes;
+            transferredFiles = skippedFiles = failedFiles = 0;
+            transferredBytes = 0;
+            startTime = System.nanoTime();
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Void>> results = new ArrayList<Future<Void>>();
+        try {
+            for (final File file : files) {
+                results.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        Path from = file.toPath().toAbsolutePath();
+                        Path to = target.resolve(source.relativize(from));
+                        transferFile(from, to, move);
+                        return null;
+                    }
+                }));
+            }
+
+            IOException failure = null;
+            for (Future<Void> result : results) {
+                try {
+                    result.get();
+                }
+                catch (ExecutionException e) {
+                    IOException cause = e.getCause() instanceof IOException
+                            ? (IOException) e.getCause()
+                            : new IOException(e.getCause());
+                    if (failure == null)
+                        failure = cause;
+                    else
+                        failure.addSuppressed(cause);
+                }
+            }
+            if (failure != null)
+                throw failure;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during transfer");
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        return progress();
+    }
+
+    private void transferFile(Path from, Path to, boolean move)
+            throws IOException {
+
+        try {
+            long size = Files.size(from);
+            FileTime modified = Files.getLastModifiedTime(from);
+
+            // a move deletes the source, so the target must really match
+            if (skipIdentical && Files.exists(to) && Files.size(to) == size
+                    && Files.getLastModifiedTime(to).equals(modified)
+                    && (!move || sameContents(from, to))) {
+                // attributes may have changed without touching the time
+                PFileUtils.copyUserDefinedFileAttributes(from.toFile(),
+                        to.toFile());
+                Files.setLastModifiedTime(to, modified);
+                if (move)
+                    Files.delete(from);
+                fileDone(from, 0, true, false);
+                return;
+            }
+
+            Files.createDirectories(to.getParent());
+
+            // a rename keeps contents and attributes without copying
+            if (move) {
+                try {
+                    Files.move(from, to, StandardCopyOption.ATOMIC_MOVE);
+                    fileDone(from, 0, false, false);
+                    return;
+                }
+                catch (AtomicMoveNotSupportedException e) {
+                    // different file stores; fall back to copying
+                }
+            }
+
+            Path partial = to.resolveSibling(to.getFileName() + PARTIAL_SUFFIX);
+            if (size < SMALL_FILE_SIZE) {
+                Files.copy(from, partial, StandardCopyOption.REPLACE_EXISTING);
+            }
+            else {
+                try (FileChannel in = FileChannel.open(from,
+                        StandardOpenOption.READ);
+                        FileChannel out = FileChannel.open(partial,
+                                StandardOpenOption.WRITE,
+                                StandardOpenOption.CREATE,
+                                StandardOpenOption.TRUNCATE_EXISTING)) {
+                    long position = 0;
+                    while (position < size) {
+                        long n = in.transferTo(position, size - position, out);
+                        if (n == 0 && position >= in.size())
+                            throw new IOException("Source truncated during copy: "
+                                    + from);
+                        position += n;
+                    }
+                }
+            }
+
+            Files.move(partial, to, StandardCopyOption.REPLACE_EXISTING);
+
+            // the modification time is set last, marking the target complete
+            PFileUtils.copyUserDefinedFileAttributes(from.toFile(), to.toFile());
+            Files.setLastModifiedTime(to, modified);
+
+            if (move)
+                Files.delete(from);
+            fileDone(from, size, false, false);
+        }
+        catch (IOException e) {
+            fileDone(from, 0, false, true);
+            throw e;
+        }
+    }
+
+    private static boolean sameContents(Path a, Path b) throws IOException {
+
+        try (FileChannel in1 = FileChannel.open(a, StandardOpenOption.READ);
+                FileChannel in2 = FileChannel.open(b, StandardOpenOption.READ)) {
+            ByteBuffer buf1 = ByteBuffer.allocate(COMPARE_BUFFER_SIZE);
+            ByteBuffer buf2 = ByteBuffer.allocate(COMPARE_BUFFER_SIZE);
+            while (true) {
+                int n1 = fill(in1, buf1);
+                int n2 = fill(in2, buf2);
+                if (n1 != n2 || !buf1.equals(buf2))
+                    return false;
+                if (n1 < COMPARE_BUFFER_SIZE)
+                    return true;
+            }
+        }
+    }
+
+    /**
+     * Reads until the buffer is full or the channel ends, leaving the buffer
+     * flipped for reading.
+     */
+    private static int fill(FileChannel in, ByteBuffer buf) throws IOException {
+        buf.clear();
+        while (buf.hasRemaining()) {
+            if (in.read(buf) < 0)
+                break;
+        }
+        buf.flip();
+        return buf.limit();
+    }
+
+    private Progress progress() {
+        synchronized (progressLock) {
+            return new Progress(totalFiles, totalBytes, transferredFiles,
+                    skippedFiles, failedFiles, transferredBytes,
+                    System.nanoTime() - startTime);
+        }
+    }
+
+    private void fileDone(Path source, long bytes, boolean skipped,
+            boolean failed) {
+
+        synchronized (progressLock) {
+            if (failed)
+                failedFiles++;
+            else if (skipped)
+                skippedFiles++;
+            else
+                transferredFiles++;
+            transferredBytes += bytes;
+
+            if (listener != null)
+                listener.fileProcessed(source.toFile(), progress());
+        }
+    }
+
+    private static void deleteEmptyDirectories(File dir) {
+        File[] children = dir.listFiles();
+        if (children == null)
+            return;
+        for (File child : children) {
+            if (child.isDirectory())
+                deleteEmptyDirectories(child);
+        }
+
+        // only succeeds if the directory is now empty
+        dir.delete();
+    }
+}
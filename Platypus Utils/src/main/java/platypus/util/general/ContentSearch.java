@@ -0,0 +1,514 @@
+package platypus.util.general;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A <code>ContentSearch</code> finds occurrences of one or more literal
+ * patterns in the contents of files. Files are memory-mapped and their raw
+ * bytes scanned with an Aho-Corasick automaton, so each file is read once
+ * regardless of the number of patterns and nothing is decoded to characters
+ * except the lines containing matches.
+ * <p>
+ * Files are searched in parallel on a fixed number of threads and matches are
+ * delivered lazily through a {@link Results} iterator. Closing the iterator
+ * stops the search, so a caller interested only in the first few matches does
+ * not pay for the rest. The search threads are daemon threads, and an
+ * iterator which is abandoned without being closed stops the search once it
+ * has been garbage collected. Files containing a NUL byte within their first
+ * kibibytes are assumed to be binary and skipped by default.
+ *
+ * @author Jingchen Xu
+ */
+public class ContentSearch {
+
+    /**
+     * A single occurrence of a pattern in a file.
+     */
+    public static class Match {
+
+        private final File file;
+
+        private final int pattern;
+
+        private final long offset;
+
+        private final long lineNumber;
+
+        private final String line;
+
+        Match(File file, int pattern, long offset, long lineNumber,
+                String line) {
+            this.file = file;
+            this.pattern = pattern;
+            this.offset = offset;
+            this.lineNumber = lineNumber;
+            this.line = line;
+        }
+
+        /**
+         * Returns the file containing the match.
+         *
+         * @return the file
+         */
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * Returns the index of the matched pattern, in the order the patterns
+         * were given.
+         *
+         * @return the pattern index
+         */
+        public int getPattern() {
+            return pattern;
+        }
+
+        /**
+         * Returns the byte offset of the start of the match.
+         *
+         * @return the offset in bytes from the start of the file
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * Returns the line on which the match starts.
+         *
+         * @return the line number, starting from 1
+         */
+        public long getLineNumber() {
+            return lineNumber;
+        }
+
+        /**
+         * Returns the text of the line containing the start of the match,
+         * without its line terminator. Lines longer than
+         * {@link ContentSearch#MAX_LINE_CONTEXT} bytes on either side of the
+         * match are truncated.
+         *
+         * @return the line text
+         */
+        public String getLine() {
+            return line;
+        }
+
+        @Override
+        public String toString() {
+            return file + ":" + lineNumber + ":" + line;
+        }
+    }
+
+    /**
+     * An iterator over the matches of a running search. Matches from the same
+     * file are returned in order, but files are searched concurrently and
+     * their matches may interleave. The search stops once this is closed.
+     */
+    public static class Results implements Iterator<Match>, Closeable {
+
+        private static final Match END = new Match(null, -1, -1, -1, null);
+
+        private final BlockingQueue<Match> queue;
+
+        private final ExecutorService executor;
+
+        private Match next = null;
+
+        private boolean done = false;
+
+        Results(BlockingQueue<Match> queue, ExecutorService executor) {
+            this.queue = queue;
+            this.executor = executor;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next != null)
+                return true;
+            if (done)
+                return false;
+
+            try {
+                next = queue.take();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                return false;
+            }
+
+            if (next == END) {
+                next = null;
+                close();
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public Match next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Match output = next;
+            next = null;
+            return output;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Stops the search. Matches not yet returned are discarded.
+         */
+        @Override
+        public void close() {
+            done = true;
+            next = null;
+            executor.shutdownNow();
+        }
+    }
+
+    /** The number of bytes checked for NUL bytes when skipping binary files. */
+    public static final int BINARY_CHECK_SIZE = (int) (8 * PUnitUtils.BYTES_PER_KIBIBYTE);
+
+    /** The number of bytes of context kept on each side of a match. */
+    public static final int MAX_LINE_CONTEXT = (int) PUnitUtils.BYTES_PER_KIBIBYTE;
+
+    private static final long MAP_SIZE = 256 * PUnitUtils.BYTES_PER_MEBIBYTE;
+
+    private static final int QUEUE_SIZE = 1024;
+
+    private static final long OFFER_TIMEOUT_MILLIS = 1000;
+
+    private final Charset charset;
+
+    private final int threads;
+
+    private boolean skipBinary = true;
+
+    // Aho-Corasick automaton: transitions[state][byte] -> state
+    private final int[][] transitions;
+
+    // patterns[outputs[state]] end at each state, including through failures
+    private final int[][] outputs;
+
+    private final int[] patternLengths;
+
+    private final int[] patternNewlines;
+
+    private final int maxPatternLength;
+
+    /**
+     * Creates a new ContentSearch for UTF-8 encoded patterns which searches
+     * on one thread per processor.
+     *
+     * @param patterns the literal patterns to search for
+     */
+    public ContentSearch(String... patterns) {
+        this(Charset.forName("UTF-8"), Runtime.getRuntime()
+                .availableProcessors(), patterns);
+    }
+
+    /**
+     * Creates a new ContentSearch.
+     *
+     * @param charset the charset in which the searched files are encoded
+     * @param threads the number of files to search concurrently
+     * @param patterns the literal patterns to search for
+     */
+    public ContentSearch(Charset charset, int threads, String... patterns) {
+
+        if (threads < 1)
+            throw new IllegalArgumentException("Thread count must be positive");
+        if (patterns.length == 0)
+            throw new IllegalArgumentException("No patterns specified");
+
+        this.charset = charset;
+        this.threads = threads;
+
+        byte[][] encoded = new byte[patterns.length][];
+        patternLengths = new int[patterns.length];
+        patternNewlines = new int[patterns.length];
+        int longest = 0;
+        for (int i = 0; i < patterns.length; i++) {
+            encoded[i] = patterns[i].getBytes(charset);
+            if (encoded[i].length == 0)
+                throw new IllegalArgumentException("Empty pattern");
+            patternLengths[i] = encoded[i].length;
+            longest = Math.max(longest, encoded[i].length);
+            for (byte b : encoded[i]) {
+                if (b == '\n')
+                    patternNewlines[i]++;
+            }
+        }
+        maxPatternLength = longest;
+
+        // build the trie
+        List<int[]> trie = new ArrayList<int[]>();
+        List<List<Integer>> ends = new ArrayList<List<Integer>>();
+        trie.add(newState());
+        ends.add(new ArrayList<Integer>());
+        for (int i = 0; i < encoded.length; i++) {
+            int state = 0;
+            for (byte b : encoded[i]) {
+                int c = b & 0xFF;
+                if (trie.get(state)[c] < 0) {
+                    trie.get(state)[c] = trie.size();
+                    trie.add(newState());
+                    ends.add(new ArrayList<Integer>());
+                }
+                state = trie.get(state)[c];
+            }
+            ends.get(state).add(i);
+        }
+
+        // turn it into a complete automaton, breadth first
+        int[] failure = new int[trie.size()];
+        ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+        for (int c = 0; c < 256; c++) {
+            int child = trie.get(0)[c];
+            if (child < 0) {
+                trie.get(0)[c] = 0;
+            }
+            else {
+                failure[child] = 0;
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            ends.get(state).addAll(ends.get(failure[state]));
+            for (int c = 0; c < 256; c++) {
+                int child = trie.get(state)[c];
+                if (child < 0) {
+                    trie.get(state)[c] = trie.get(failure[state])[c];
+                }
+                else {
+                    failure[child] = trie.get(failure[state])[c];
+                    queue.add(child);
+                }
+            }
+        }
+
+        transitions = trie.toArray(new int[trie.size()][]);
+        outputs = new int[ends.size()][];
+        for (int i = 0; i < outputs.length; i++) {
+            outputs[i] = new int[ends.get(i).size()];
+            for (int j = 0; j < outputs[i].length; j++)
+                outputs[i][j] = ends.get(i).get(j);
+        }
+    }
+
+    /**
+     * Sets whether files which appear to be binary are skipped. This is
+     * enabled by default.
+     *
+     * @param skipBinary true to skip binary files
+     */
+    public void setSkipBinary(boolean skipBinary) {
+        this.skipBinary = skipBinary;
+    }
+
+    /**
+     * Searches all files in a directory tree.
+     *
+     * @param root the directory to search
+     * @return the matches, delivered as they are found
+     */
+    public Results search(File root) {
+        return search(PFileUtils.deepListFiles(root));
+    }
+
+    /**
+     * Searches the specified files. Files which cannot be read are skipped.
+     *
+     * @param files the files to search
+     * @return the matches, delivered as they are found
+     */
+    public Results search(Collection<File> files) {
+
+        final BlockingQueue<Match> queue = new ArrayBlockingQueue<Match>(
+                QUEUE_SIZE);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads,
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "ContentSearch-"
+                                + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        final AtomicInteger remaining = new AtomicInteger(files.size());
+        Results results = new Results(queue, executor);
+
+        // the workers must not keep the results reachable, or an abandoned
+        // search would never stop
+        final WeakReference<Results> owner = new WeakReference<Results>(
+                results);
+
+        if (files.isEmpty()) {
+            queue.add(Results.END);
+            return results;
+        }
+
+        for (final File file : files) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    boolean closed = false;
+                    try {
+                        searchFile(file, queue, owner);
+                    }
+                    catch (InterruptedException | ClosedByInterruptException e) {
+                        // the search was closed
+                        closed = true;
+                    }
+                    catch (IOException | RuntimeException e) {
+                        e.printStackTrace();
+                    }
+                    finally {
+                        // even a failed file must count, or the results never end
+                        if (!closed)
+                            finish(remaining, queue, owner);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+
+        return results;
+    }
+
+    private static void finish(AtomicInteger remaining,
+            BlockingQueue<Match> queue, WeakReference<Results> owner) {
+        try {
+            if (remaining.decrementAndGet() == 0)
+                deliver(Results.END, queue, owner);
+        }
+        catch (InterruptedException e) {
+            // the search was closed
+        }
+    }
+
+    /**
+     * Queues a match, giving up once the results have been closed or
+     * garbage collected.
+     */
+    private static void deliver(Match match, BlockingQueue<Match> queue,
+            WeakReference<Results> owner) throws InterruptedException {
+        while (!queue.offer(match, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (owner.get() == null)
+                throw new InterruptedException();
+        }
+    }
+
+    private void searchFile(File file, BlockingQueue<Match> queue,
+            WeakReference<Results> owner) throws IOException,
+            InterruptedException {
+
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+
+            long size = channel.size();
+            int state = 0;
+            long lines = 0;
+
+            // windows overlap so lines crossing their edges are kept whole
+            long before = MAX_LINE_CONTEXT + maxPatternLength;
+            for (long base = 0; base < size; base += MAP_SIZE) {
+                long mapStart = Math.max(0, base - before);
+                long mapEnd = Math.min(size, base + MAP_SIZE + MAX_LINE_CONTEXT);
+                MappedByteBuffer buf = channel.map(
+                        FileChannel.MapMode.READ_ONLY, mapStart, mapEnd
+                                - mapStart);
+                int from = (int) (base - mapStart);
+                int limit = (int) (Math.min(size, base + MAP_SIZE) - mapStart);
+
+                if (base == 0 && skipBinary && isBinary(buf))
+                    return;
+
+                for (int i = from; i < limit; i++) {
+
+                    // stop promptly once the search is closed
+                    if ((i & 0xFFFF) == 0 && Thread.interrupted())
+                        throw new InterruptedException();
+
+                    byte b = buf.get(i);
+                    if (b == '\n')
+                        lines++;
+                    state = transitions[state][b & 0xFF];
+
+                    for (int pattern : outputs[state]) {
+                        int start = i - patternLengths[pattern] + 1;
+                        long lineNumber = lines - patternNewlines[pattern] + 1;
+                        deliver(new Match(file, pattern, mapStart + start,
+                                lineNumber, lineAt(buf, start)), queue, owner);
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean isBinary(MappedByteBuffer buf) {
+        int limit = Math.min(buf.limit(), BINARY_CHECK_SIZE);
+        for (int i = 0; i < limit; i++) {
+            if (buf.get(i) == 0)
+                return true;
+        }
+        return false;
+    }
+
+    private String lineAt(MappedByteBuffer buf, int position) {
+
+        int start = position;
+        int min = Math.max(0, position - MAX_LINE_CONTEXT);
+        while (start > min && buf.get(start - 1) != '\n')
+            start--;
+
+        int end = position;
+        int max = Math.min(buf.limit(), position + MAX_LINE_CONTEXT);
+        while (end < max && buf.get(end) != '\n')
+            end++;
+        if (end > start && buf.get(end - 1) == '\r')
+            end--;
+
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = buf.get(start + i);
+        return new String(bytes, charset);
+    }
+
+    private static int[] newState() {
+        int[] state = new int[256];
+        Arrays.fill(state, -1);
+        return state;
+    }
+}
@@ -0,0 +1,390 @@
+package platypus.util.general;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A <code>DuplicateFinder</code> finds groups of files with identical
+ * contents. Files are compared in three stages, each of which only considers
+ * files which could not be told apart by the previous one:
+ * <ol>
+ * <li>files are grouped by size;</li>
+ * <li>files are grouped by a hash of their first and last few kibibytes;</li>
+ * <li>files are grouped by a hash of their entire contents, read through
+ * memory-mapped channels.</li>
+ * </ol>
+ * The hashing stages run in parallel on a fixed number of threads. Groups are
+ * passed to a {@link DuplicateHandler} as soon as they are confirmed, so
+ * results can be consumed while larger files are still being hashed.
+ * <p>
+ * If a hash attribute is set, full hashes are stored in that user defined
+ * attribute of each file along with the hash algorithm and the file's size
+ * and modification time. Later runs using the same algorithm reuse the stored
+ * hash of any file which has not changed since. Hashes are not cached on file
+ * stores without user defined attributes.
+ * Empty files are never reported as duplicates.
+ *
+ * @author Jingchen Xu
+ */
+public class DuplicateFinder {
+
+    /**
+     * Receives groups of duplicate files as they are found.
+     */
+    public interface DuplicateHandler {
+
+        /**
+         * Called on the thread running the search for each group of files
+         * with identical contents.
+         *
+         * @param group two or more files with identical contents, ordered by
+         *        path
+         */
+        void duplicatesFound(List<File> group);
+    }
+
+    /** The number of bytes hashed at each end of a file in the second stage. */
+    public static final int PARTIAL_HASH_SIZE = (int) (4 * PUnitUtils.BYTES_PER_KIBIBYTE);
+
+    private static final long MAP_SIZE = 64 * PUnitUtils.BYTES_PER_MEBIBYTE;
+
+    private final int threads;
+
+    private final String algorithm;
+
+    private String hashAttribute = null;
+
+    /**
+     * Creates a new DuplicateFinder which hashes files with SHA-256 on one
+     * thread per processor.
+     */
+    public DuplicateFinder() {
+        this(Runtime.getRuntime().availableProcessors(), "SHA-256");
+    }
+
+    /**
+     * Creates a new DuplicateFinder.
+     *
+     * @param threads the number of threads to hash files on
+     * @param algorithm the name of the <code>MessageDigest</code> algorithm
+     *        to hash files with
+     */
+    public DuplicateFinder(int threads, String algorithm) {
+
+        if (threads < 1)
+            throw new IllegalArgumentException("Thread count must be positive");
+        try {
+            MessageDigest.getInstance(algorithm);
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException(e);
+        }
+
+        this.threads = threads;
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * Sets the user defined file attribute in which full hashes are cached.
+     *
+     * @param hashAttribute the name of the attribute, or null to disable
+     *        caching
+     */
+    public void setHashAttribute(String hashAttribute) {
+        this.hashAttribute = hashAttribute;
+    }
+
+    /**
+     * Returns the user defined file attribute in which full hashes are cached.
+     *
+     * @return the name of the attribute, or null if caching is disabled
+     */
+    public String getHashAttribute() {
+        return hashAttribute;
+    }
+
+    /**
+     * Finds all groups of duplicate files in a directory tree.
+     *
+     * @param root the directory to search
+     * @return the groups of duplicate files
+     * @throws IOException if interrupted while hashing files
+     */
+    public List<List<File>> findDuplicates(File root) throws IOException {
+        return findDuplicates(PFileUtils.deepListFiles(root));
+    }
+
+    /**
+     * Finds all groups of duplicate files among the specified files.
+     *
+     * @param files the files to compare
+     * @return the groups of duplicate files
+     * @throws IOException if interrupted while hashing files
+     */
+    public List<List<File>> findDuplicates(Collection<File> files)
+            throws IOException {
+
+        final List<List<File>> groups = new ArrayList<List<File>>();
+        findDuplicates(files, new DuplicateHandler() {
+            @Override
+            public void duplicatesFound(List<File> group) {
+                groups.add(group);
+            }
+        });
+        return groups;
+    }
+
+    /**
+     * Finds all groups of duplicate files among the specified files, passing
+     * each group to a handler as soon as it is confirmed. Files which cannot
+     * be read are skipped.
+     *
+     * @param files the files to compare
+     * @param handler the handler to receive groups of duplicate files
+     * @throws IOException if interrupted while hashing files
+     */
+    public void findDuplicates(Collection<File> files, DuplicateHandler handler)
+            throws IOException {
+
+        // stage 1: group by size
+        Map<Long, List<File>> bySize = new HashMap<Long, List<File>>();
+        for (File file : files) {
+            if (file.isFile() && file.length() > 0)
+                put(bySize, file.length(), file);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+
+            // stage 2: group by partial hash
+            List<List<File>> candidates = new ArrayList<List<File>>();
+            List<File> partialFiles = new ArrayList<File>();
+            for (List<File> group : bySize.values()) {
+                if (group.size() < 2)
+                    continue;
+
+                // small files are hashed completely in the final stage
+                if (group.get(0).length() <= 2 * PARTIAL_HASH_SIZE)
+                    candidates.add(group);
+                else
+                    partialFiles.addAll(group);
+            }
+
+            Map<String, List<File>> byPartial = new HashMap<String, List<File>>();
+            CompletionService<FileHash> partials = new ExecutorCompletionService<FileHash>(
+                    executor);
+            for (final File file : partialFiles) {
+                partials.submit(new Callable<FileHash>() {
+                    @Override
+                    public FileHash call() throws IOException {
+                        return new FileHash(file, partialHash(file), null);
+                    }
+                });
+            }
+            for (int i = 0; i < partialFiles.size(); i++) {
+                FileHash result = take(partials);
+                if (result != null)
+                    put(byPartial, result.file.length() + ":" + result.hash,
+                            result.file);
+            }
+            for (List<File> group : byPartial.values()) {
+                if (group.size() > 1)
+                    candidates.add(group);
+            }
+
+            // stage 3: group by full hash, reporting each candidate group
+            // once all of its files are hashed
+            CompletionService<FileHash> fulls = new ExecutorCompletionService<FileHash>(
+                    executor);
+            Map<List<File>, Map<String, List<File>>> results = new IdentityHashMap<List<File>, Map<String, List<File>>>();
+            Map<List<File>, Integer> remaining = new IdentityHashMap<List<File>, Integer>();
+            int submitted = 0;
+            for (final List<File> group : candidates) {
+                results.put(group, new HashMap<String, List<File>>());
+                remaining.put(group, group.size());
+                for (final File file : group) {
+                    fulls.submit(new Callable<FileHash>() {
+                        @Override
+                        public FileHash call() throws IOException {
+                            return new FileHash(file, fullHash(file), group);
+                        }
+                    });
+                    submitted++;
+                }
+            }
+
+            for (int i = 0; i < submitted; i++) {
+                FileHash result = take(fulls);
+                if (result == null)
+                    continue;
+
+                put(results.get(result.group), result.hash, result.file);
+                int left = remaining.get(result.group) - 1;
+                remaining.put(result.group, left);
+                if (left == 0)
+                    report(results.remove(result.group), handler);
+            }
+
+            // report groups in which some files could not be read
+            for (Map<String, List<File>> byHash : results.values())
+                report(byHash, handler);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void report(Map<String, List<File>> byHash,
+            DuplicateHandler handler) {
+        for (List<File> group : byHash.values()) {
+            if (group.size() > 1) {
+                Collections.sort(group);
+                handler.duplicatesFound(group);
+            }
+        }
+    }
+
+    /**
+     * Takes the next hash from a completion service, returning null if the
+     * file could not be read.
+     */
+    private static FileHash take(CompletionService<FileHash> service)
+            throws IOException {
+        try {
+            return service.take().get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while hashing files");
+        }
+        catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+            return null;
+        }
+    }
+
+    private String partialHash(File file) throws IOException {
+
+        MessageDigest digest = newDigest();
+        ByteBuffer buf = ByteBuffer.allocate(PARTIAL_HASH_SIZE);
+
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            readFully(channel, buf, 0);
+            digest.update(buf);
+
+            buf.clear();
+            readFully(channel, buf, channel.size() - PARTIAL_HASH_SIZE);
+            digest.update(buf);
+        }
+
+        return toHex(digest.digest());
+    }
+
+    private String fullHash(File file) throws IOException {
+
+        // reuse the cached hash if the file is unchanged
+        String stamp = algorithm + ":" + file.length() + ":"
+                + file.lastModified() + ":";
+        boolean cache = hashAttribute != null
+                && Files.getFileAttributeView(file.toPath(),
+                        UserDefinedFileAttributeView.class) != null;
+        if (cache) {
+            String cached = PFileUtils.readUserDefinedFileAttribute(file,
+                    hashAttribute);
+            if (cached != null && cached.startsWith(stamp))
+                return cached.substring(stamp.length());
+        }
+
+        MessageDigest digest = newDigest();
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += MAP_SIZE) {
+                digest.update(channel.map(FileChannel.MapMode.READ_ONLY,
+                        position, Math.min(MAP_SIZE, size - position)));
+            }
+        }
+        String hash = toHex(digest.digest());
+
+        if (cache)
+            PFileUtils.setUserDefinedFileAttribute(file, hashAttribute,
+                    stamp + hash);
+
+        return hash;
+    }
+
+    private MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        }
+        catch (NoSuchAlgorithmException e) {
+            // checked in the constructor
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buf,
+            long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int read = channel.read(buf, position);
+            if (read < 0)
+                break;
+            position += read;
+        }
+        buf.flip();
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16))
+                    .append(Character.forDigit(b & 0xF, 16));
+        return sb.toString();
+    }
+
+    private static <K> void put(Map<K, List<File>> map, K key, File file) {
+        List<File> list = map.get(key);
+        if (list == null) {
+            list = new ArrayList<File>();
+            map.put(key, list);
+        }
+        list.add(file);
+    }
+
+    private static class FileHash {
+
+        private final File file;
+
+        private final String hash;
+
+        private final List<File> group;
+
+        FileHash(File file, String hash, List<File> group) {
+            this.file = file;
+            this.hash = hash;
+            this.group = group;
+        }
+    }
+}
@@ -0,0 +1,398 @@
+package platypus.util.general;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-memory histogram for recording latencies, using the log-linear
+ * bucketing scheme popularized by HdrHistogram. Values are grouped into
+ * buckets covering successive powers of two, each of which is divided into
+ * enough linear sub-buckets to preserve the requested number of significant
+ * decimal digits. The memory used depends only on the highest trackable value
+ * and the precision, never on the number of values recorded.
+ * <p>
+ * Recording is lock-free and may be done from any number of threads at once.
+ * Values are conventionally in nanoseconds, which is how they are formatted
+ * by {@link #toString()}, but any non-negative <code>long</code> unit may be
+ * used. Values above the highest trackable value are recorded as the highest
+ * trackable value.
+ * <p>
+ * Queries are not atomic with respect to concurrent recording; a query made
+ * while values are being recorded reflects some, but not necessarily all, of
+ * those values. Use {@link #snapshotAndReset()} to take consistent interval
+ * measurements.
+ *
+ * @author Jingchen Xu
+ */
+public class LatencyHistogram {
+
+    private final long highestTrackableValue;
+
+    private final int significantDigits;
+
+    private final int subBucketCount;
+
+    private final int subBucketHalfCount;
+
+    private final int subBucketHalfCountMagnitude;
+
+    private final long subBucketMask;
+
+    private final int leadingZeroCountBase;
+
+    private final AtomicLongArray counts;
+
+    // the sum of counts, kept so queries need not add them up
+    private final AtomicLong totalCount = new AtomicLong();
+
+    private final AtomicLong minValue = new AtomicLong(Long.MAX_VALUE);
+
+    private final AtomicLong maxValue = new AtomicLong(0);
+
+    /**
+     * Creates a new LatencyHistogram which tracks values up to one hour in
+     * nanoseconds with three significant digits.
+     */
+    public LatencyHistogram() {
+        this(3600 * PUnitUtils.NANOSECS_PER_SEC, 3);
+    }
+
+    /**
+     * Creates a new LatencyHistogram.
+     *
+     * @param highestTrackableValue the highest value which can be recorded
+     *        without loss of precision. Must be at least 2.
+     * @param significantDigits the number of significant decimal digits to
+     *        preserve, from 1 to 5
+     */
+    public LatencyHistogram(long highestTrackableValue, int significantDigits) {
+
+        if (highestTrackableValue < 2)
+            throw new IllegalArgumentException(
+                    "Highest trackable value must be at least 2");
+        if (significantDigits < 1 || significantDigits > 5)
+            throw new IllegalArgumentException(
+                    "Significant digits must be between 1 and 5");
+
+        this.highestTrackableValue = highestTrackableValue;
+        this.significantDigits = significantDigits;
+
+        // enough sub-buckets to separate values at the requested precision
+        long largestSingleUnitResolution = 2 * (long) Math.pow(10,
+                significantDigits);
+        int subBucketCountMagnitude = 64 - Long
+                .numberOfLeadingZeros(largestSingleUnitResolution - 1);
+        subBucketHalfCountMagnitude = subBucketCountMagnitude - 1;
+        subBucketCount = 1 << subBucketCountMagnitude;
+        subBucketHalfCount = subBucketCount / 2;
+        subBucketMask = subBucketCount - 1;
+        leadingZeroCountBase = 63 - subBucketHalfCountMagnitude;
+
+        // each bucket doubles the range covered by the previous one
+        int bucketCount = 1;
+        long smallestUntrackableValue = subBucketCount;
+        while (smallestUntrackableValue <= highestTrackableValue) {
+            if (smallestUntrackableValue > Long.MAX_VALUE / 2) {
+                bucketCount++;
+                break;
+            }
+            smallestUntrackableValue <<= 1;
+            bucketCount++;
+        }
+
+        counts = new AtomicLongArray((bucketCount + 1) * subBucketHalfCount);
+    }
+
+    /**
+     * Creates a new empty histogram with the same configuration as this one.
+     *
+     * @return the new histogram
+     */
+    public LatencyHistogram createEmptyCopy() {
+        return new LatencyHistogram(highestTrackableValue, significantDigits);
+    }
+
+    /**
+     * Returns the highest value which can be recorded without loss of
+     * precision.
+     *
+     * @return the highest trackable value
+     */
+    public long getHighestTrackableValue() {
+        return highestTrackableValue;
+    }
+
+    /**
+     * Returns the number of significant decimal digits preserved.
+     *
+     * @return the number of significant digits
+     */
+    public int getSignificantDigits() {
+        return significantDigits;
+    }
+
+    /**
+     * Records a single value.
+     *
+     * @param value the value to record
+     */
+    public void recordValue(long value) {
+        recordValueWithCount(value, 1);
+    }
+
+    /**
+     * Records multiple occurrences of a value.
+     *
+     * @param value the value to record
+     * @param count the number of occurrences
+     */
+    public void recordValueWithCount(long value, long count) {
+
+        if (value < 0)
+            throw new IllegalArgumentException("Cannot record negative values");
+        if (value > highestTrackableValue)
+            value = highestTrackableValue;
+
+        counts.addAndGet(countsIndexFor(value), count);
+        totalCount.addAndGet(count);
+        updateMin(value);
+        updateMax(value);
+    }
+
+    /**
+     * Records the time elapsed since a <code>System.nanoTime()</code> reading.
+     *
+     * @param startNanos the reading taken at the start of the timed operation
+     * @return the elapsed time in nanoseconds
+     */
+    public long recordElapsed(long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        recordValue(Math.max(0, elapsed));
+        return elapsed;
+    }
+
+    /**
+     * Adds all of the values recorded in another histogram to this one. The
+     * other histogram may have a different configuration, in which case its
+     * values are recorded at the precision of its buckets. Its minimum and
+     * maximum are merged exactly.
+     *
+     * @param other the histogram to merge into this one
+     */
+    public void add(LatencyHistogram other) {
+        long added = 0;
+        for (int i = 0; i < other.counts.length(); i++) {
+            long count = other.counts.get(i);
+            if (count != 0) {
+                long value = Math.min(other.valueFromIndex(i),
+                        highestTrackableValue);
+                counts.addAndGet(countsIndexFor(value), count);
+                added += count;
+
+                // the bounds of the bucket never overstate the extremes, and
+                // cover values whose extremes were recorded after a snapshot
+                updateMin(Math.min(value + sizeOfEquivalentRange(value) - 1,
+                        highestTrackableValue));
+                updateMax(value);
+            }
+        }
+        totalCount.addAndGet(added);
+
+        long min = other.minValue.get();
+        if (min != Long.MAX_VALUE)
+            updateMin(Math.min(min, highestTrackableValue));
+        updateMax(Math.min(other.getMax(), highestTrackableValue));
+    }
+
+    /**
+     * Creates a copy of this histogram.
+     *
+     * @return a histogram containing the values recorded so far
+     */
+    public LatencyHistogram copy() {
+        LatencyHistogram copy = createEmptyCopy();
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            long count = counts.get(i);
+            copy.counts.set(i, count);
+            total += count;
+        }
+        copy.totalCount.set(total);
+        copy.minValue.set(minValue.get());
+        copy.maxValue.set(maxValue.get());
+        return copy;
+    }
+
+    /**
+     * Moves all values recorded so far into a new histogram, leaving this one
+     * empty. Values recorded concurrently are counted either in the returned
+     * snapshot or in this histogram, but never lost or counted twice, which
+     * makes this suitable for periodic interval reporting.
+     *
+     * @return a histogram containing the values recorded since the last reset
+     */
+    public LatencyHistogram snapshotAndReset() {
+        LatencyHistogram snapshot = createEmptyCopy();
+        snapshot.minValue.set(minValue.getAndSet(Long.MAX_VALUE));
+        snapshot.maxValue.set(maxValue.getAndSet(0));
+        long moved = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            long count = counts.getAndSet(i, 0);
+            snapshot.counts.set(i, count);
+            moved += count;
+        }
+        snapshot.totalCount.set(moved);
+        totalCount.addAndGet(-moved);
+        return snapshot;
+    }
+
+    /**
+     * Removes all recorded values.
+     */
+    public void reset() {
+        long removed = 0;
+        for (int i = 0; i < counts.length(); i++)
+            removed += counts.getAndSet(i, 0);
+        totalCount.addAndGet(-removed);
+        minValue.set(Long.MAX_VALUE);
+        maxValue.set(0);
+    }
+
+    /**
+     * Returns the total number of values recorded.
+     *
+     * @return the total count
+     */
+    public long getTotalCount() {
+        return totalCount.get();
+    }
+
+    /**
+     * Returns the lowest value recorded, or 0 if no values have been recorded.
+     *
+     * @return the minimum value
+     */
+    public long getMin() {
+        long min = minValue.get();
+        return min == Long.MAX_VALUE ? 0 : min;
+    }
+
+    /**
+     * Returns the highest value recorded, or 0 if no values have been
+     * recorded.
+     *
+     * @return the maximum value
+     */
+    public long getMax() {
+        return maxValue.get();
+    }
+
+    /**
+     * Returns the mean of the recorded values, computed from the midpoints of
+     * their buckets.
+     *
+     * @return the mean value, or 0 if no values have been recorded
+     */
+    public double getMean() {
+        long total = 0;
+        double sum = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            long count = counts.get(i);
+            if (count != 0) {
+                long value = valueFromIndex(i);
+                sum += count * (value + (sizeOfEquivalentRange(value) - 1) / 2.0);
+                total += count;
+            }
+        }
+        return total == 0 ? 0 : sum / total;
+    }
+
+    /**
+     * Returns the value below which the specified percentage of recorded
+     * values fall. The result is the highest value equivalent, at this
+     * histogram's precision, to the recorded value at that percentile.
+     *
+     * @param percentile the percentile, from 0 to 100
+     * @return the value at the percentile, or 0 if no values have been
+     *         recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException(
+                    "Percentile must be between 0 and 100");
+
+        long total = totalCount.get();
+        if (total <= 0)
+            return 0;
+
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                long value = valueFromIndex(i);
+                return Math.min(value + sizeOfEquivalentRange(value) - 1,
+                        getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Returns a summary of the recorded values, formatted as durations in
+     * nanoseconds.
+     */
+    @Override
+    public String toString() {
+        return String.format(
+                "count=%d min=%s p50=%s p90=%s p99=%s p99.9=%s max=%s",
+                getTotalCount(), PUnitUtils.formatDuration(getMin()),
+                PUnitUtils.formatDuration(getValueAtPercentile(50)),
+                PUnitUtils.formatDuration(getValueAtPercentile(90)),
+                PUnitUtils.formatDuration(getValueAtPercentile(99)),
+                PUnitUtils.formatDuration(getValueAtPercentile(99.9)),
+                PUnitUtils.formatDuration(getMax()));
+    }
+
+    private void updateMin(long value) {
+        long current;
+        while (value < (current = minValue.get())) {
+            if (minValue.compareAndSet(current, value))
+                return;
+        }
+    }
+
+    private void updateMax(long value) {
+        long current;
+        while (value > (current = maxValue.get())) {
+            if (maxValue.compareAndSet(current, value))
+                return;
+        }
+    }
+
+    private int countsIndexFor(long value) {
+        int bucketIndex = leadingZeroCountBase
+                - Long.numberOfLeadingZeros(value | subBucketMask);
+        int subBucketIndex = (int) (value >>> bucketIndex);
+        return ((bucketIndex + 1) << subBucketHalfCountMagnitude)
+                + (subBucketIndex - subBucketHalfCount);
+    }
+
+    private long valueFromIndex(int index) {
+        int bucketIndex = (index >> subBucketHalfCountMagnitude) - 1;
+        int subBucketIndex = (index & (subBucketHalfCount - 1))
+                + subBucketHalfCount;
+        if (bucketIndex < 0) {
+            subBucketIndex -= subBucketHalfCount;
+            bucketIndex = 0;
+        }
+        return (long) subBucketIndex << bucketIndex;
+    }
+
+    private long sizeOfEquivalentRange(long value) {
+        int bucketIndex = leadingZeroCountBase
+                - Long.numberOfLeadingZeros(value | subBucketMask);
+        return 1L << bucketIndex;
+    }
+}
@@ -0,0 +1,122 @@
+package platypus.util.general;
+
+import java.util.Comparator;
+
+/**
+ * A <code>Comparator</code> which orders character sequences in natural order,
+ * so that <code>"part2"</code> sorts before <code>"part10"</code>. Runs of
+ * consecutive digits are compared by numeric value while all other characters
+ * are compared individually, optionally ignoring case.
+ * <p>
+ * Digit runs are compared in place, so numbers of any length can be compared
+ * without overflow and no objects are allocated during a comparison. When two
+ * numbers are equal but differ in their leading zeros, the number with fewer
+ * leading zeros is ordered first, but only if the sequences are otherwise
+ * equal.
+ * <p>
+ * Instances of this class are stateless and may be shared between threads.
+ *
+ * @author Jingchen Xu
+ */
+public class NaturalOrderComparator implements Comparator<CharSequence> {
+
+    /** A case-sensitive natural order comparator. */
+    public static final NaturalOrderComparator NATURAL_ORDER = new NaturalOrderComparator(
+            false);
+
+    /** A case-insensitive natural order comparator. */
+    public static final NaturalOrderComparator CASE_INSENSITIVE_NATURAL_ORDER = new NaturalOrderComparator(
+            true);
+
+    private final boolean ignoreCase;
+
+    /**
+     * Creates a new NaturalOrderComparator.
+     *
+     * @param ignoreCase whether non-digit characters should be compared
+     *        without regard to case
+     */
+    public NaturalOrderComparator(boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+    }
+
+    /**
+     * Returns whether this comparator ignores case.
+     *
+     * @return true if non-digit characters are compared without regard to case
+     */
+    public boolean isIgnoreCase() {
+        return ignoreCase;
+    }
+
+    @Override
+    public int compare(CharSequence a, CharSequence b) {
+
+        int lenA = a.length(), lenB = b.length();
+        int i = 0, j = 0;
+
+        // decided only by leading zeros; used if nothing else differs
+        int zeroBias = 0;
+
+        while (i < lenA && j < lenB) {
+            char ca = a.charAt(i);
+            char cb = b.charAt(j);
+
+            if (Character.isDigit(ca) && Character.isDigit(cb)) {
+
+                // skip leading zeros
+                int startA = i, startB = j;
+                while (i < lenA && Character.digit(a.charAt(i), 10) == 0)
+                    i++;
+                while (j < lenB && Character.digit(b.charAt(j), 10) == 0)
+                    j++;
+                int zerosA = i - startA, zerosB = j - startB;
+
+                // find the end of each digit run
+                int endA = i, endB = j;
+                while (endA < lenA && Character.isDigit(a.charAt(endA)))
+                    endA++;
+                while (endB < lenB && Character.isDigit(b.charAt(endB)))
+                    endB++;
+
+                // a longer significant run is a larger number
+                int sigA = endA - i, sigB = endB - j;
+                if (sigA != sigB)
+                    return sigA < sigB ? -1 : 1;
+
+                // same length, so the first differing digit decides
+                for (; i < endA; i++, j++) {
+                    int da = Character.digit(a.charAt(i), 10);
+                    int db = Character.digit(b.charAt(j), 10);
+                    if (da != db)
+                        return da < db ? -1 : 1;
+                }
+
+                if (zeroBias == 0 && zerosA != zerosB)
+                    zeroBias = zerosA < zerosB ? -1 : 1;
+
+                continue;
+            }
+
+            if (ca != cb) {
+                if (ignoreCase) {
+                    ca = Character.toLowerCase(Character.toUpperCase(ca));
+                    cb = Character.toLowerCase(Character.toUpperCase(cb));
+                }
+                if (ca != cb)
+                    return ca - cb;
+            }
+
+            i++;
+            j++;
+        }
+
+        // the sequence with characters left over comes last
+        if (i < lenA)
+            return 1;
+        if (j < lenB)
+            return -1;
+
+        return zeroBias;
+    }
+}
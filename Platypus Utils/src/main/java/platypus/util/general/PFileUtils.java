@@ -12,7 +12,9 @@ import java.nio.file.Paths;
 import java.nio.file.attribute.UserDefinedFileAttributeView;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * A collection of methods for manipulating files.
@@ -21,6 +23,25 @@ import java.util.Map;
  */
 public class PFileUtils {
 
+    /**
+     * Receives notifications when user defined file attributes are changed
+     * through the methods of this class.
+     */
+    public interface AttributeListener {
+
+        /**
+         * Called after an attribute is written or deleted.
+         *
+         * @param file the file whose attribute changed
+         * @param attribute the name of the attribute
+         * @param value the new value of the attribute, or null if it was
+         *        deleted
+         */
+        void attributeChanged(File file, String attribute, String value);
+    }
+
+    private static final List<AttributeListener> attributeListeners = new CopyOnWriteArrayList<AttributeListener>();
+
     private PFileUtils() {
     }
 
@@ -102,14 +123,11 @@ public class PFileUtils {
         // read previous value
         try {
             String previousValue = null;
-            if (view.size(attribute) > 0) {
+            if (view.list().contains(attribute) && view.size(attribute) > 0) {
                 ByteBuffer buf = ByteBuffer.allocate(view.size(attribute));
                 view.read(attribute, buf);
                 buf.flip();
                 previousValue = Charset.defaultCharset().decode(buf).toString();
-
-                System.out.printf("Replaced previous value: %s\n",
-                        previousValue);
             }
 
             return previousValue;
@@ -130,6 +148,7 @@ public class PFileUtils {
                     view.write(attribute,
                             Charset.defaultCharset().encode(value));
 
+                notifyAttributeListeners(file, attribute, value);
             }
             catch (NoSuchFileException e) {
                 System.err.println("Attribute not deleted; " + attribute
@@ -171,7 +190,9 @@ public class PFileUtils {
      *
      * @param file the file to read the attribute from
      * @param attribute the attribute to read
-     * @return the value of that attribute
+     * @return the value of that attribute, or null if the file does not have
+     *         that attribute or its file store does not support user defined
+     *         attributes
      */
     public static String readUserDefinedFileAttribute(File file,
             String attribute) {
@@ -182,8 +203,13 @@ public class PFileUtils {
         Path path = Paths.get(file.getAbsolutePath());
         UserDefinedFileAttributeView view = Files.getFileAttributeView(path,
                 UserDefinedFileAttributeView.class);
+        if (view == null)
+            return null;
 
         try {
+            if (!view.list().contains(attribute))
+                return null;
+
             ByteBuffer buf = ByteBuffer.allocate(view.size(attribute));
             view.read(attribute, buf);
             buf.flip();
@@ -249,6 +275,7 @@ public class PFileUtils {
                 UserDefinedFileAttributeView.class);
         try {
             view.delete(attribute);
+            notifyAttributeListeners(file, attribute, null);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -270,9 +297,76 @@ public class PFileUtils {
         try {
             for (String attribute : view.list()) {
                 view.delete(attribute);
+                notifyAttributeListeners(file, attribute, null);
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
+
+    /**
+     * Copies all user defined file attributes from one file to another. The
+     * raw attribute values are copied, so values which are not text in the
+     * default charset are preserved. Attributes already on the target file
+     * are overwritten but not otherwise removed. If either file's file store
+     * does not support user defined attributes, nothing is copied.
+     *
+     * @param source the file to copy attributes from
+     * @param target the file to copy attributes to
+     * @return the number of attributes copied
+     * @throws IOException if an attribute cannot be read or written
+     */
+    public static int copyUserDefinedFileAttributes(File source, File target)
+            throws IOException {
+
+        UserDefinedFileAttributeView sourceView = Files.getFileAttributeView(
+                source.toPath(), UserDefinedFileAttributeView.class);
+        UserDefinedFileAttributeView targetView = Files.getFileAttributeView(
+                target.toPath(), UserDefinedFileAttributeView.class);
+        if (sourceView == null || targetView == null)
+            return 0;
+
+        int copied = 0;
+        for (String attribute : sourceView.list()) {
+            ByteBuffer buf = ByteBuffer.allocate(sourceView.size(attribute));
+            sourceView.read(attribute, buf);
+            buf.flip();
+            targetView.write(attribute, buf);
+            copied++;
+
+            if (!attributeListeners.isEmpty()) {
+                buf.flip();
+                notifyAttributeListeners(target, attribute,
+                        Charset.defaultCharset().decode(buf).toString());
+            }
+        }
+
+        return copied;
+    }
+
+    /**
+     * Adds a listener to be notified whenever a user defined file attribute is
+     * written or deleted through this class.
+     *
+     * @param listener the listener to add
+     */
+    public static void addAttributeListener(AttributeListener listener) {
+        attributeListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added with
+     * {@link #addAttributeListener(AttributeListener)}.
+     *
+     * @param listener the listener to remove
+     */
+    public static void removeAttributeListener(AttributeListener listener) {
+        attributeListeners.remove(listener);
+    }
+
+    private static void notifyAttributeListeners(File file, String attribute,
+            String value) {
+        for (AttributeListener l : attributeListeners)
+            l.attributeChanged(file, attribute, value);
+    }
 }
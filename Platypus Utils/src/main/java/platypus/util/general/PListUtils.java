@@ -1,15 +1,40 @@
 package platypus.util.general;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
 
 /**
  * A collection of methods for sorting and searching lists.
+ * <p>
+ * Besides sorting, this class provides operations which exploit lists and
+ * arrays that are already sorted: binary searches, a k-way merge, and the
+ * union, intersection and difference of two sorted inputs in linear time.
+ * When one input of an intersection or difference is much smaller than the
+ * other, the larger one is searched by galloping rather than scanned, so
+ * the cost depends mostly on the smaller input. The lazy variants produce
+ * their output while iterating over their inputs, so neither needs to be
+ * held in memory.
+ * <p>
+ * The set operations treat their inputs as sorted multisets: an element
+ * occurring m times in the first input and n times in the second occurs
+ * max(m, n) times in the union, min(m, n) times in the intersection and
+ * max(m - n, 0) times in the difference. Where a comparator is accepted, a
+ * null comparator selects the elements' natural ordering.
  *
  * @author Jingchen Xu
  */
 public class PListUtils {
 
+    // inputs this many times larger than the other are galloped through
+    private static final int GALLOP_RATIO = 8;
+
     private PListUtils() {}
 
     /**
@@ -75,6 +100,620 @@ public class PListUtils {
             quickSort(list, i, high);
     }
 
+    /**
+     * Generates a sorted copy of a given list using the quicksort algorithm.
+     * The list is sorted in ascending order as determined by the specified
+     * comparator.
+     *
+     * @param <T> the type of the list elements
+     * @param list the list to be sort
+     * @param c the comparator determining the order of the list
+     * @return a sorted copy of the list
+     */
+    public static <T> List<T> quickSort(List<T> list, Comparator<? super T> c) {
+
+        if (list == null || list.size() == 0)
+            return null;
+
+        List<T> output = new ArrayList<T>();
+        output.addAll(list);
+
+        quickSort(output, 0, output.size() - 1, c);
+
+        return output;
+    }
+
+    /**
+     * Partially sorts a given list in place using the quicksort algorithm. The
+     * elements from index low to high are sorted in ascending order as
+     * determined by the specified comparator. The remaining elements remain in
+     * the order given.
+     *
+     * @param <T> the type of the list elements
+     * @param list the list to sort
+     * @param low the bottom index of the partition to be sorted (inclusive)
+     * @param high the upper index of the partition to be sorted (inclusive)
+     * @param c the comparator determining the order of the list
+     */
+    public static <T> void quickSort(List<T> list, int low, int high,
+            Comparator<? super T> c) {
+
+        int i = low, j = high;
+        T pivot = list.get(low + (high - low) / 2);
+
+        while (i <= j) {
+
+            // make sure elements before pivot are below it
+            while (c.compare(list.get(i), pivot) < 0)
+                i++;
+
+            // make sure elements after pivot are above it
+            while (c.compare(list.get(j), pivot) > 0)
+                j--;
+
+            // if not past the pivot, swap and move on
+            if (i <= j) {
+                swap(list, i, j);
+                i++;
+                j--;
+            }
+        }
+
+        // check if there are any lower elements
+        if (low < j)
+            quickSort(list, low, j, c);
+
+        // check if there are any higher elements
+        if (i < high)
+            quickSort(list, i, high, c);
+    }
+
+    /**
+     * Searches a sorted list for an element using binary search.
+     *
+     * @param <T> the type of the list elements
+     * @param list the sorted list to search
+     * @param key the element to search for
+     * @return the index of an element equal to the key, or
+     *         <code>-(insertion point) - 1</code> if there is none
+     */
+    public static <T extends Comparable<? super T>> int binarySearch(
+            List<? extends T> list, T key) {
+        return binarySearch(list, key, null);
+    }
+
+    /**
+     * Searches a sorted list for an element using binary search.
+     *
+     * @param <T> the type of the list elements
+     * @param list the sorted list to search
+     * @param key the element to search for
+     * @param c the comparator by which the list is sorted
+     * @return the index of an element equal to the key, or
+     *         <code>-(insertion point) - 1</code> if there is none
+     */
+    public static <T> int binarySearch(List<? extends T> list, T key,
+            Comparator<? super T> c) {
+        int index = lowerBound(list, key, c);
+        if (index < list.size() && compare(c, list.get(index), key) == 0)
+            return index;
+        return -index - 1;
+    }
+
+    /**
+     * Finds the first element of a sorted list which is not less than a key.
+     *
+     * @param <T> the type of the list elements
+     * @param list the sorted list to search
+     * @param key the element to search for
+     * @return the index of the first element not less than the key, or the
+     *         size of the list if there is none
+     */
+    public static <T extends Comparable<? super T>> int lowerBound(
+            List<? extends T> list, T key) {
+        return lowerBound(list, 0, list.size(), key, null);
+    }
+
+    /**
+     * Finds the first element of a sorted list which is not less than a key.
+     *
+     * @param <T> the type of the list elements
+     * @param list the sorted list to search
+     * @param key the element to search for
+     * @param c the comparator by which the list is sorted
+     * @return the index of the first element not less than the key, or the
+     *         size of the list if there is none
+     */
+    public static <T> int lowerBound(List<? extends T> list, T key,
+            Comparator<? super T> c) {
+        if (!(list instanceof RandomAccess))
+            return iteratorBound(list, key, c, false);
+        return lowerBound(list, 0, list.size(), key, c);
+    }
+
+    /**
+     * Finds the first element of a sorted list which is greater than a key.
+     *
+     * @param <T> the type of the list elements
+     * @param list the sorted list to search
+     * @param key the element to search for
+     * @return the index of the first element greater than the key, or the
+     *         size of the list if there is none
+     */
+    public static <T extends Comparable<? super T>> int upperBound(
+            List<? extends T> list, T key) {
+        return upperBound(list, key, null);
+    }
+
+    /**
+     * Finds the first element of a sorted list which is greater than a key.
+     *
+     * @param <T> the type of the list elements
+     * @param list the sorted list to search
+     * @param key the element to search for
+     * @param c the comparator by which the list is sorted
+     * @return the index of the first element greater than the key, or the
+     *         size of the list if there is none
+     */
+    public static <T> int upperBound(List<? extends T> list, T key,
+            Comparator<? super T> c) {
+        if (!(list instanceof RandomAccess))
+            return iteratorBound(list, key, c, true);
+        int low = 0, high = list.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(c, list.get(mid), key) <= 0)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Merges sorted lists into one sorted list. Equal elements keep the order
+     * of the lists they come from.
+     *
+     * @param <T> the type of the list elements
+     * @param lists the sorted lists to merge
+     * @param c the comparator by which the lists are sorted
+     * @return a new sorted list of all elements
+     */
+    public static <T> List<T> merge(Collection<? extends List<? extends T>> lists,
+            Comparator<? super T> c) {
+        int size = 0;
+        for (List<? extends T> list : lists)
+            size += list.size();
+        return toList(lazyMerge(lists, c), size);
+    }
+
+    /**
+     * Lazily merges sorted sequences. The sequences are combined through a
+     * tournament tree, so each element costs about log2(k) comparisons for k
+     * sequences, and only one element of each sequence is held at a time.
+     * Equal elements keep the order of the sequences they come from.
+     *
+     * @param <T> the type of the elements
+     * @param sources the sorted sequences to merge
+     * @param c the comparator by which the sequences are sorted
+     * @return an <code>Iterable</code> over the merged elements
+     */
+    public static <T> Iterable<T> lazyMerge(
+            final Collection<? extends Iterable<? extends T>> sources,
+            final Comparator<? super T> c) {
+        return new Iterable<T>() {
+            @Override
+            public Iterator<T> iterator() {
+                return new MergeIterator<T>(sources, c);
+            }
+        };
+    }
+
+    /**
+     * Computes the union of two sorted lists.
+     *
+     * @param <T> the type of the list elements
+     * @param a the first sorted list
+     * @param b the second sorted list
+     * @param c the comparator by which the lists are sorted
+     * @return a new sorted list of the union
+     */
+    public static <T> List<T> union(List<? extends T> a, List<? extends T> b,
+            Comparator<? super T> c) {
+        return toList(lazyUnion(a, b, c), a.size() + b.size());
+    }
+
+    /**
+     * Computes the intersection of two sorted lists. Equal elements are taken
+     * from the first list.
+     *
+     * @param <T> the type of the list elements
+     * @param a the first sorted list
+     * @param b the second sorted list
+     * @param c the comparator by which the lists are sorted
+     * @return a new sorted list of the intersection
+     */
+    public static <T> List<T> intersection(List<? extends T> a,
+            List<? extends T> b, Comparator<? super T> c) {
+
+        if (!gallops(a, b))
+            return toList(lazyIntersection(a, b, c),
+                    Math.min(a.size(), b.size()));
+
+        // look up each element of the smaller list in the larger one
+        List<? extends T> small = a.size() <= b.size() ? a : b;
+        List<? extends T> large = small == a ? b : a;
+        List<T> output = new ArrayList<T>();
+        int j = 0;
+        for (int i = 0; i < small.size() && j < large.size(); i++) {
+            T e = small.get(i);
+            j = gallop(large, j, e, c);
+            if (j < large.size() && compare(c, large.get(j), e) == 0) {
+                output.add(small == a ? e : large.get(j));
+                j++;
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Computes the difference of two sorted lists.
+     *
+     * @param <T> the type of the list elements
+     * @param a the sorted list whose elements are kept
+     * @param b the sorted list whose elements are removed
+     * @param c the comparator by which the lists are sorted
+     * @return a new sorted list of the elements of <code>a</code> not in
+     *         <code>b</code>
+     */
+    public static <T> List<T> difference(List<? extends T> a,
+            List<? extends T> b, Comparator<? super T> c) {
+
+        if (!gallops(a, b))
+            return toList(lazyDifference(a, b, c), a.size());
+
+        List<T> output = new ArrayList<T>();
+        if (a.size() <= b.size()) {
+            // look up each element of a in b
+            int j = 0;
+            for (T e : a) {
+                j = gallop(b, j, e, c);
+                if (j < b.size() && compare(c, b.get(j), e) == 0)
+                    j++;
+                else
+                    output.add(e);
+            }
+        }
+        else {
+            // copy the runs of a between the elements of b
+            int i = 0;
+            for (int j = 0; j < b.size() && i < a.size(); j++) {
+                T e = b.get(j);
+                int next = gallop(a, i, e, c);
+                output.addAll(a.subList(i, next));
+                i = next;
+                if (i < a.size() && compare(c, a.get(i), e) == 0)
+                    i++;
+            }
+            output.addAll(a.subList(i, a.size()));
+        }
+        return output;
+    }
+
+    /**
+     * Lazily computes the union of two sorted sequences.
+     *
+     * @param <T> the type of the elements
+     * @param a the first sorted sequence
+     * @param b the second sorted sequence
+     * @param c the comparator by which the sequences are sorted
+     * @return an <code>Iterable</code> over the union
+     */
+    public static <T> Iterable<T> lazyUnion(Iterable<? extends T> a,
+            Iterable<? extends T> b, Comparator<? super T> c) {
+        return lazySetOperation(a, b, c, SetOperationIterator.UNION);
+    }
+
+    /**
+     * Lazily computes the intersection of two sorted sequences. Equal
+     * elements are taken from the first sequence.
+     *
+     * @param <T> the type of the elements
+     * @param a the first sorted sequence
+     * @param b the second sorted sequence
+     * @param c the comparator by which the sequences are sorted
+     * @return an <code>Iterable</code> over the intersection
+     */
+    public static <T> Iterable<T> lazyIntersection(Iterable<? extends T> a,
+            Iterable<? extends T> b, Comparator<? super T> c) {
+        return lazySetOperation(a, b, c, SetOperationIterator.INTERSECTION);
+    }
+
+    /**
+     * Lazily computes the difference of two sorted sequences.
+     *
+     * @param <T> the type of the elements
+     * @param a the sorted sequence whose elements are kept
+     * @param b the sorted sequence whose elements are removed
+     * @param c the comparator by which the sequences are sorted
+     * @return an <code>Iterable</code> over the elements of <code>a</code>
+     *         not in <code>b</code>
+     */
+    public static <T> Iterable<T> lazyDifference(Iterable<? extends T> a,
+            Iterable<? extends T> b, Comparator<? super T> c) {
+        return lazySetOperation(a, b, c, SetOperationIterator.DIFFERENCE);
+    }
+
+    /**
+     * Finds the first element of a sorted array which is not less than a key.
+     *
+     * @param a the sorted array to search
+     * @param key the value to search for
+     * @return the index of the first element not less than the key, or the
+     *         length of the array if there is none
+     */
+    public static int lowerBound(int[] a, int key) {
+        return lowerBound(a, 0, a.length, key);
+    }
+
+    /**
+     * Finds the first element of a sorted array which is greater than a key.
+     *
+     * @param a the sorted array to search
+     * @param key the value to search for
+     * @return the index of the first element greater than the key, or the
+     *         length of the array if there is none
+     */
+    public static int upperBound(int[] a, int key) {
+        return key == Integer.MAX_VALUE ? a.length : lowerBound(a, key + 1);
+    }
+
+    /**
+     * Finds the first element of a sorted array which is not less than a key.
+     *
+     * @param a the sorted array to search
+     * @param key the value to search for
+     * @return the index of the first element not less than the key, or the
+     *         length of the array if there is none
+     */
+    public static int lowerBound(long[] a, long key) {
+        return lowerBound(a, 0, a.length, key);
+    }
+
+    /**
+     * Finds the first element of a sorted array which is greater than a key.
+     *
+     * @param a the sorted array to search
+     * @param key the value to search for
+     * @return the index of the first element greater than the key, or the
+     *         length of the array if there is none
+     */
+    public static int upperBound(long[] a, long key) {
+        return key == Long.MAX_VALUE ? a.length : lowerBound(a, key + 1);
+    }
+
+    /**
+     * Computes the union of two sorted arrays.
+     *
+     * @param a the first sorted array
+     * @param b the second sorted array
+     * @return a new sorted array of the union
+     */
+    public static int[] union(int[] a, int[] b) {
+        int[] output = new int[a.length + b.length];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j])
+                output[k++] = a[i++];
+            else if (a[i] > b[j])
+                output[k++] = b[j++];
+            else {
+                output[k++] = a[i++];
+                j++;
+            }
+        }
+        System.arraycopy(a, i, output, k, a.length - i);
+        k += a.length - i;
+        System.arraycopy(b, j, output, k, b.length - j);
+        k += b.length - j;
+        return Arrays.copyOf(output, k);
+    }
+
+    /**
+     * Computes the intersection of two sorted arrays.
+     *
+     * @param a the first sorted array
+     * @param b the second sorted array
+     * @return a new sorted array of the intersection
+     */
+    public static int[] intersection(int[] a, int[] b) {
+        int[] small = a.length <= b.length ? a : b;
+        int[] large = small == a ? b : a;
+        int[] output = new int[small.length];
+        int k = 0;
+
+        if (large.length / GALLOP_RATIO >= small.length) {
+            int j = 0;
+            for (int i = 0; i < small.length && j < large.length; i++) {
+                j = gallop(large, j, small[i]);
+                if (j < large.length && large[j] == small[i]) {
+                    output[k++] = small[i];
+                    j++;
+                }
+            }
+        }
+        else {
+            int i = 0, j = 0;
+            while (i < a.length && j < b.length) {
+                if (a[i] < b[j])
+                    i++;
+                else if (a[i] > b[j])
+                    j++;
+                else {
+                    output[k++] = a[i++];
+                    j++;
+                }
+            }
+        }
+        return Arrays.copyOf(output, k);
+    }
+
+    /**
+     * Computes the difference of two sorted arrays.
+     *
+     * @param a the sorted array whose elements are kept
+     * @param b the sorted array whose elements are removed
+     * @return a new sorted array of the elements of <code>a</code> not in
+     *         <code>b</code>
+     */
+    public static int[] difference(int[] a, int[] b) {
+        int[] output = new int[a.length];
+        int i = 0, j = 0, k = 0;
+
+        if (a.length / GALLOP_RATIO >= b.length) {
+            // copy the runs of a between the elements of b
+            for (j = 0; j < b.length && i < a.length; j++) {
+                int next = gallop(a, i, b[j]);
+                System.arraycopy(a, i, output, k, next - i);
+                k += next - i;
+                i = next;
+                if (i < a.length && a[i] == b[j])
+                    i++;
+            }
+        }
+        else {
+            boolean gallop = b.length / GALLOP_RATIO >= a.length;
+            while (i < a.length && j < b.length) {
+                if (gallop)
+                    j = gallop(b, j, a[i]);
+                if (j == b.length)
+                    break;
+                if (a[i] < b[j])
+                    output[k++] = a[i++];
+                else if (a[i] > b[j])
+                    j++;
+                else {
+                    i++;
+                    j++;
+                }
+            }
+        }
+        System.arraycopy(a, i, output, k, a.length - i);
+        k += a.length - i;
+        return Arrays.copyOf(output, k);
+    }
+
+    /**
+     * Computes the union of two sorted arrays.
+     *
+     * @param a the first sorted array
+     * @param b the second sorted array
+     * @return a new sorted array of the union
+     */
+    public static long[] union(long[] a, long[] b) {
+        long[] output = new long[a.length + b.length];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j])
+                output[k++] = a[i++];
+            else if (a[i] > b[j])
+                output[k++] = b[j++];
+            else {
+                output[k++] = a[i++];
+                j++;
+            }
+        }
+        System.arraycopy(a, i, output, k, a.length - i);
+        k += a.length - i;
+        System.arraycopy(b, j, output, k, b.length - j);
+        k += b.length - j;
+        return Arrays.copyOf(output, k);
+    }
+
+    /**
+     * Computes the intersection of two sorted arrays.
+     *
+     * @param a the first sorted array
+     * @param b the second sorted array
+     * @return a new sorted array of the intersection
+     */
+    public static long[] intersection(long[] a, long[] b) {
+        long[] small = a.length <= b.length ? a : b;
+        long[] large = small == a ? b : a;
+        long[] output = new long[small.length];
+        int k = 0;
+
+        if (large.length / GALLOP_RATIO >= small.length) {
+            int j = 0;
+            for (int i = 0; i < small.length && j < large.length; i++) {
+                j = gallop(large, j, small[i]);
+                if (j < large.length && large[j] == small[i]) {
+                    output[k++] = small[i];
+                    j++;
+                }
+            }
+        }
+        else {
+            int i = 0, j = 0;
+            while (i < a.length && j < b.length) {
+                if (a[i] < b[j])
+                    i++;
+                else if (a[i] > b[j])
+                    j++;
+                else {
+                    output[k++] = a[i++];
+                    j++;
+                }
+            }
+        }
+        return Arrays.copyOf(output, k);
+    }
+
+    /**
+     * Computes the difference of two sorted arrays.
+     *
+     * @param a the sorted array whose elements are kept
+     * @param b the sorted array whose elements are removed
+     * @return a new sorted array of the elements of <code>a</code> not in
+     *         <code>b</code>
+     */
+    public static long[] difference(long[] a, long[] b) {
+        long[] output = new long[a.length];
+        int i = 0, j = 0, k = 0;
+
+        if (a.length / GALLOP_RATIO >= b.length) {
+            // copy the runs of a between the elements of b
+            for (j = 0; j < b.length && i < a.length; j++) {
+                int next = gallop(a, i, b[j]);
+                System.arraycopy(a, i, output, k, next - i);
+                k += next - i;
+                i = next;
+                if (i < a.length && a[i] == b[j])
+                    i++;
+            }
+        }
+        else {
+            boolean gallop = b.length / GALLOP_RATIO >= a.length;
+            while (i < a.length && j < b.length) {
+                if (gallop)
+                    j = gallop(b, j, a[i]);
+                if (j == b.length)
+                    break;
+                if (a[i] < b[j])
+                    output[k++] = a[i++];
+                else if (a[i] > b[j])
+                    j++;
+                else {
+                    i++;
+                    j++;
+                }
+            }
+        }
+        System.arraycopy(a, i, output, k, a.length - i);
+        k += a.length - i;
+        return Arrays.copyOf(output, k);
+    }
+
     /**
      * Swaps two elements of a list in place.
      *
@@ -89,4 +728,357 @@ public class PListUtils {
         list.set(j, store);
     }
 
+    @SuppressWarnings("unchecked")
+    private static <T> int compare(Comparator<? super T> c, T a, T b) {
+        if (c != null)
+            return c.compare(a, b);
+        return ((Comparable<? super T>) a).compareTo(b);
+    }
+
+    private static <T> List<T> toList(Iterable<T> iterable, int capacity) {
+        List<T> output = new ArrayList<T>(capacity);
+        for (T e : iterable)
+            output.add(e);
+        return output;
+    }
+
+    private static boolean gallops(List<?> a, List<?> b) {
+        if (!(a instanceof RandomAccess) || !(b instanceof RandomAccess))
+            return false;
+        int small = Math.min(a.size(), b.size());
+        int large = Math.max(a.size(), b.size());
+        return large / GALLOP_RATIO >= small;
+    }
+
+    private static <T> int lowerBound(List<? extends T> list, int low,
+            int high, T key, Comparator<? super T> c) {
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(c, list.get(mid), key) < 0)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Finds the lower or upper bound of a key in a list without random
+     * access. As in <code>Collections.binarySearch</code>, a list iterator is
+     * moved from probe to probe, so the list is traversed about once rather
+     * than once per probe.
+     */
+    private static <T> int iteratorBound(List<? extends T> list, T key,
+            Comparator<? super T> c, boolean upper) {
+        ListIterator<? extends T> it = list.listIterator();
+        int low = 0, high = list.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(c, moveTo(it, mid), key);
+            if (upper ? cmp <= 0 : cmp < 0)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    private static <T> T moveTo(ListIterator<? extends T> it, int index) {
+        T e;
+        int position = it.nextIndex();
+        if (position <= index) {
+            do {
+                e = it.next();
+            } while (position++ < index);
+        }
+        else {
+            do {
+                e = it.previous();
+            } while (--position > index);
+        }
+        return e;
+    }
+
+    /**
+     * Finds the lower bound of a key at or after an index, probing at
+     * exponentially growing distances before searching the last gap.
+     */
+    private static <T> int gallop(List<? extends T> list, int from, T key,
+            Comparator<? super T> c) {
+        int low = from, high = from, step = 1;
+        while (high < list.size() && compare(c, list.get(high), key) < 0) {
+            low = high + 1;
+            high = from + step;
+            step <<= 1;
+        }
+        return lowerBound(list, low, Math.min(high, list.size()), key, c);
+    }
+
+    private static int lowerBound(int[] a, int low, int high, int key) {
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (a[mid] < key)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    private static int gallop(int[] a, int from, int key) {
+        int low = from, high = from, step = 1;
+        while (high < a.length && a[high] < key) {
+            low = high + 1;
+            high = from + step;
+            step <<= 1;
+        }
+        return lowerBound(a, low, Math.min(high, a.length), key);
+    }
+
+    private static int lowerBound(long[] a, int low, int high, long key) {
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (a[mid] < key)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    private static int gallop(long[] a, int from, long key) {
+        int low = from, high = from, step = 1;
+        while (high < a.length && a[high] < key) {
+            low = high + 1;
+            high = from + step;
+            step <<= 1;
+        }
+        return lowerBound(a, low, Math.min(high, a.length), key);
+    }
+
+    private static <T> Iterable<T> lazySetOperation(
+            final Iterable<? extends T> a, final Iterable<? extends T> b,
+            final Comparator<? super T> c, final int operation) {
+        return new Iterable<T>() {
+            @Override
+            public Iterator<T> iterator() {
+                return new SetOperationIterator<T>(a.iterator(),
+                        b.iterator(), c, operation);
+            }
+        };
+    }
+
+    /**
+     * Walks two sorted iterators in step, producing a set operation of them.
+     */
+    private static class SetOperationIterator<T> implements Iterator<T> {
+
+        static final int UNION = 0;
+
+        static final int INTERSECTION = 1;
+
+        static final int DIFFERENCE = 2;
+
+        private final Iterator<? extends T> a, b;
+
+        private final Comparator<? super T> c;
+
+        private final int operation;
+
+        private T headA, headB, next;
+
+        private boolean hasA, hasB, ready = false;
+
+        SetOperationIterator(Iterator<? extends T> a, Iterator<? extends T> b,
+                Comparator<? super T> c, int operation) {
+            this.a = a;
+            this.b = b;
+            this.c = c;
+            this.operation = operation;
+            advanceA();
+            advanceB();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!ready)
+                ready = computeNext();
+            return ready;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            ready = false;
+            T output = next;
+            next = null;
+            return output;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private boolean computeNext() {
+            while (hasA || hasB) {
+                int cmp;
+                if (!hasB)
+                    cmp = -1;
+                else if (!hasA)
+                    cmp = 1;
+                else
+                    cmp = compare(c, headA, headB);
+
+                if (cmp < 0) {
+                    T e = headA;
+                    advanceA();
+                    if (operation != INTERSECTION) {
+                        next = e;
+                        return true;
+                    }
+                    if (!hasB)
+                        return false;
+                }
+                else if (cmp > 0) {
+                    T e = headB;
+                    advanceB();
+                    if (operation == UNION) {
+                        next = e;
+                        return true;
+                    }
+                    if (!hasA)
+                        return false;
+                }
+                else {
+                    T e = headA;
+                    advanceA();
+                    advanceB();
+                    if (operation != DIFFERENCE) {
+                        next = e;
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private void advanceA() {
+            hasA = a.hasNext();
+            headA = hasA ? a.next() : null;
+        }
+
+        private void advanceB() {
+            hasB = b.hasNext();
+            headB = hasB ? b.next() : null;
+        }
+    }
+
+    /**
+     * Merges sorted iterators through a tree of losers: each internal node
+     * holds the source which lost the match played there, and the overall
+     * winner is kept at the root. Replacing the winner replays only the
+     * matches on its path.
+     */
+    private static class MergeIterator<T> implements Iterator<T> {
+
+        private final Comparator<? super T> c;
+
+        private final List<Iterator<? extends T>> sources;
+
+        private final Object[] heads;
+
+        private final boolean[] exhausted;
+
+        // tree[0] is the winner; tree[1..k-1] hold losers
+        private final int[] tree;
+
+        private final int k;
+
+        MergeIterator(Collection<? extends Iterable<? extends T>> iterables,
+                Comparator<? super T> c) {
+            this.c = c;
+            this.k = iterables.size();
+            this.sources = new ArrayList<Iterator<? extends T>>(k);
+            this.heads = new Object[k];
+            this.exhausted = new boolean[k];
+            this.tree = new int[Math.max(k, 1)];
+
+            for (Iterable<? extends T> iterable : iterables)
+                sources.add(iterable.iterator());
+            for (int i = 0; i < k; i++)
+                advance(i);
+            if (k > 0)
+                tree[0] = build(1);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return k > 0 && !exhausted[tree[0]];
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+
+            int winner = tree[0];
+            T output = (T) heads[winner];
+            advance(winner);
+
+            // replay the matches from the winner's leaf to the root
+            for (int node = (winner + k) >>> 1; node > 0; node >>>= 1) {
+                if (beats(tree[node], winner)) {
+                    int loser = winner;
+                    winner = tree[node];
+                    tree[node] = loser;
+                }
+            }
+            tree[0] = winner;
+            return output;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        // plays the matches below a node, returning the winner
+        private int build(int node) {
+            if (node >= k)
+                return node - k;
+            int left = build(2 * node);
+            int right = build(2 * node + 1);
+            if (beats(right, left)) {
+                tree[node] = left;
+                return right;
+            }
+            tree[node] = right;
+            return left;
+        }
+
+        // exhausted sources lose; ties go to the earlier source
+        @SuppressWarnings("unchecked")
+        private boolean beats(int i, int j) {
+            if (exhausted[i])
+                return false;
+            if (exhausted[j])
+                return true;
+            int cmp = compare(c, (T) heads[i], (T) heads[j]);
+            return cmp < 0 || (cmp == 0 && i < j);
+        }
+
+        private void advance(int i) {
+            Iterator<? extends T> it = sources.get(i);
+            if (it.hasNext()) {
+                heads[i] = it.next();
+            }
+            else {
+                heads[i] = null;
+                exhausted[i] = true;
+            }
+        }
+    }
 }
@@ -62,7 +62,7 @@ public class PStringUtils {
         for (int loop = 0; loop < s.length(); loop++) {
             current = 0;
             add = false;
-            while (Character.isDigit(s.charAt(loop))) {
+            while (loop < s.length() && Character.isDigit(s.charAt(loop))) {
                 current = current * 10
                         + Integer.parseInt(Character.toString(s.charAt(loop)));
                 loop++;
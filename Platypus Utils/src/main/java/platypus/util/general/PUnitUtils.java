@@ -1,5 +1,7 @@
 package platypus.util.general;
 
+import java.util.Locale;
+
 /**
  * A collection of methods and constants relating to units of measurement.
  *
@@ -7,6 +9,12 @@ package platypus.util.general;
  */
 public class PUnitUtils {
 
+    /** Nanoseconds per microsecond. */
+    public static final long NANOSECS_PER_MICROSEC = 1000L;
+
+    /** Nanoseconds per millisecond. */
+    public static final long NANOSECS_PER_MILLISEC = 1000L * 1000L;
+
     /** Nanoseconds per second. */
     public static final long NANOSECS_PER_SEC = 1000L * 1000L * 1000L;
 
@@ -19,4 +27,67 @@ public class PUnitUtils {
     /** Bytes per gibibyte. */
     public static final long BYTES_PER_GIBIBYTE = 1024L * 1024L * 1024L;
 
+    /**
+     * Formats a duration using the largest unit, up to seconds, in which it is
+     * at least one. For example, 1500000 is formatted as
+     * <code>"1.50 ms"</code>.
+     *
+     * @param nanos the duration in nanoseconds
+     * @return the formatted duration
+     */
+    public static String formatDuration(long nanos) {
+
+        long abs = Math.abs(nanos);
+        if (abs < NANOSECS_PER_MICROSEC)
+            return nanos + " ns";
+        else if (abs < NANOSECS_PER_MILLISEC)
+            return format(nanos, NANOSECS_PER_MICROSEC, "us");
+        else if (abs < NANOSECS_PER_SEC)
+            return format(nanos, NANOSECS_PER_MILLISEC, "ms");
+        else
+            return format(nanos, NANOSECS_PER_SEC, "s");
+    }
+
+    /**
+     * Formats a size using the largest binary unit, up to gibibytes, in which
+     * it is at least one. For example, 1536 is formatted as
+     * <code>"1.50 KiB"</code>.
+     *
+     * @param bytes the size in bytes
+     * @return the formatted size
+     */
+    public static String formatSize(long bytes) {
+
+        long abs = Math.abs(bytes);
+        if (abs < BYTES_PER_KIBIBYTE)
+            return bytes + " B";
+        else if (abs < BYTES_PER_MEBIBYTE)
+            return format(bytes, BYTES_PER_KIBIBYTE, "KiB");
+        else if (abs < BYTES_PER_GIBIBYTE)
+            return format(bytes, BYTES_PER_MEBIBYTE, "MiB");
+        else
+            return format(bytes, BYTES_PER_GIBIBYTE, "GiB");
+    }
+
+    /**
+     * Formats the rate at which a number of bytes were processed over a
+     * duration, such as <code>"12.50 MiB/s"</code>.
+     *
+     * @param bytes the number of bytes processed
+     * @param nanos the time taken in nanoseconds
+     * @return the formatted throughput
+     */
+    public static String formatThroughput(long bytes, long nanos) {
+
+        if (nanos <= 0)
+            return "- B/s";
+
+        double perSec = (double) bytes * NANOSECS_PER_SEC / nanos;
+        return formatSize((long) perSec) + "/s";
+    }
+
+    private static String format(long value, long unit, String suffix) {
+        return String.format(Locale.ROOT, "%.2f %s", (double) value / unit,
+                suffix);
+    }
 }
@@ -0,0 +1,438 @@
+package platypus.util.general;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * An immutable <code>List</code> stored as a 32-way trie, from which modified
+ * versions can be derived without copying. Each modifying method returns a
+ * new vector sharing all unchanged nodes with this one, so keeping many
+ * versions of a large list costs little more than keeping one.
+ * <p>
+ * Elements are held in leaves of 32, with the last partial leaf kept
+ * separately as the tail. Lookups, replacements and changes at the end of
+ * the vector touch one node per level, and the trie of a million elements
+ * has only four levels. Insertions and removals elsewhere rebuild the vector
+ * from that position onwards, so their cost grows with the number of
+ * elements after the position.
+ * <p>
+ * The <code>List</code> mutator methods throw
+ * <code>UnsupportedOperationException</code>. Vectors are safe to share
+ * between threads without synchronization.
+ *
+ * @author Jingchen Xu
+ * @param <E> the type of elements in this vector
+ */
+public final class PersistentVector<E> extends AbstractList<E> implements
+        RandomAccess {
+
+    private static final int BITS = 5;
+
+    private static final int WIDTH = 1 << BITS;
+
+    private static final int MASK = WIDTH - 1;
+
+    private static final PersistentVector<Object> EMPTY = new PersistentVector<Object>(
+            0, BITS, new Object[WIDTH], new Object[0]);
+
+    private final int size;
+
+    // the number of bits indexing the root level
+    private final int shift;
+
+    private final Object[] root;
+
+    private final Object[] tail;
+
+    private PersistentVector(int size, int shift, Object[] root, Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    /**
+     * Returns the empty vector.
+     *
+     * @param <E> the type of elements in the vector
+     * @return the empty vector
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentVector<E> empty() {
+        return (PersistentVector<E>) EMPTY;
+    }
+
+    /**
+     * Returns a vector containing the elements of a collection, in the order
+     * they are returned by its iterator.
+     *
+     * @param <E> the type of elements in the vector
+     * @param c the collection whose elements are to be placed in the vector
+     * @return the vector
+     */
+    public static <E> PersistentVector<E> copyOf(Collection<? extends E> c) {
+        PersistentVector<E> empty = empty();
+        return empty.plusAll(c);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        checkIndex(index);
+        return (E) leafFor(index)[index & MASK];
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+
+            private int index = 0;
+
+            private Object[] leaf = null;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public E next() {
+                if (index >= size)
+                    throw new NoSuchElementException();
+                if ((index & MASK) == 0 || leaf == null)
+                    leaf = leafFor(index);
+                return (E) leaf[index++ & MASK];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Returns a vector with an element appended.
+     *
+     * @param element the element to append
+     * @return the new vector
+     */
+    public PersistentVector<E> plus(E element) {
+
+        int tailSize = size - tailOffset();
+        if (tailSize < WIDTH) {
+            Object[] newTail = Arrays.copyOf(tail, tailSize + 1);
+            newTail[tailSize] = element;
+            return new PersistentVector<E>(size + 1, shift, root, newTail);
+        }
+
+        return pushLeaf(new Object[] { element });
+    }
+
+    /**
+     * Returns a vector with an element inserted. Elements at and after the
+     * position are shifted right.
+     *
+     * @param index the position at which to insert the element
+     * @param element the element to insert
+     * @return the new vector
+     */
+    public PersistentVector<E> plus(int index, E element) {
+        checkPosition(index);
+        if (index == size)
+            return plus(element);
+
+        Object[] rest = new Object[size - index + 1];
+        rest[0] = element;
+        copyRange(index, size, rest, 1);
+        return truncate(index).plusAll(rest, 0, rest.length);
+    }
+
+    /**
+     * Returns a vector with the elements of a collection appended, in the
+     * order they are returned by its iterator.
+     *
+     * @param c the collection whose elements are to be appended
+     * @return the new vector
+     */
+    public PersistentVector<E> plusAll(Collection<? extends E> c) {
+        Object[] elements = c.toArray();
+        return plusAll(elements, 0, elements.length);
+    }
+
+    /**
+     * Returns a vector with the elements of a collection inserted. Elements
+     * at and after the position are shifted right.
+     *
+     * @param index the position at which to insert the elements
+     * @param c the collection whose elements are to be inserted
+     * @return the new vector
+     */
+    public PersistentVector<E> plusAll(int index, Collection<? extends E> c) {
+        checkPosition(index);
+        Object[] elements = c.toArray();
+        if (elements.length == 0)
+            return this;
+        if (index == size)
+            return plusAll(elements, 0, elements.length);
+
+        Object[] rest = Arrays.copyOf(elements, elements.length + size
+                - index);
+        copyRange(index, size, rest, elements.length);
+        return truncate(index).plusAll(rest, 0, rest.length);
+    }
+
+    /**
+     * Returns a vector with an element replaced.
+     *
+     * @param index the position of the element to replace
+     * @param element the new element
+     * @return the new vector
+     */
+    public PersistentVector<E> with(int index, E element) {
+        checkIndex(index);
+
+        if (index >= tailOffset()) {
+            Object[] newTail = tail.clone();
+            newTail[index & MASK] = element;
+            return new PersistentVector<E>(size, shift, root, newTail);
+        }
+        return new PersistentVector<E>(size, shift, replace(shift, root,
+                index, element), tail);
+    }
+
+    /**
+     * Returns a vector with an element removed. Elements after the position
+     * are shifted left.
+     *
+     * @param index the position of the element to remove
+     * @return the new vector
+     */
+    public PersistentVector<E> minus(int index) {
+        return minus(index, index + 1);
+    }
+
+    /**
+     * Returns a vector with a range of elements removed. Elements after the
+     * range are shifted left.
+     *
+     * @param fromIndex the position of the first element to remove
+     * @param toIndex the position after the last element to remove
+     * @return the new vector
+     */
+    public PersistentVector<E> minus(int fromIndex, int toIndex) {
+
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex)
+            throw new IndexOutOfBoundsException("Range: " + fromIndex + "-"
+                    + toIndex + ", Size: " + size);
+        if (fromIndex == toIndex)
+            return this;
+
+        Object[] rest = new Object[size - toIndex];
+        copyRange(toIndex, size, rest, 0);
+        return truncate(fromIndex).plusAll(rest, 0, rest.length);
+    }
+
+    /**
+     * Returns a vector with the last element removed.
+     *
+     * @return the new vector
+     * @throws NoSuchElementException if this vector is empty
+     */
+    public PersistentVector<E> minusLast() {
+
+        if (size == 0)
+            throw new NoSuchElementException();
+        if (size == 1)
+            return empty();
+
+        if (size - tailOffset() > 1) {
+            return new PersistentVector<E>(size - 1, shift, root,
+                    Arrays.copyOf(tail, tail.length - 1));
+        }
+
+        // the tail is emptied; the last leaf becomes the tail
+        Object[] newTail = leafFor(size - 2);
+        Object[] newRoot = popTail(size, shift, root);
+        int newShift = shift;
+        if (newRoot == null)
+            newRoot = new Object[WIDTH];
+        if (shift > BITS && newRoot[1] == null) {
+            newRoot = (Object[]) newRoot[0];
+            newShift -= BITS;
+        }
+        return new PersistentVector<E>(size - 1, newShift, newRoot, newTail);
+    }
+
+    private int tailOffset() {
+        return size < WIDTH ? 0 : ((size - 1) >>> BITS) << BITS;
+    }
+
+    private Object[] leafFor(int index) {
+        if (index >= tailOffset())
+            return tail;
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS)
+            node = (Object[]) node[(index >>> level) & MASK];
+        return node;
+    }
+
+    private void copyRange(int from, int to, Object[] dest, int destPos) {
+        for (int i = from; i < to;) {
+            Object[] leaf = leafFor(i);
+            int n = Math.min(WIDTH - (i & MASK), to - i);
+            System.arraycopy(leaf, i & MASK, dest, destPos, n);
+            i += n;
+            destPos += n;
+        }
+    }
+
+    /**
+     * Returns the first elements of this vector, sharing whole leaves.
+     */
+    private PersistentVector<E> truncate(int newSize) {
+        if (newSize == 0)
+            return empty();
+
+        // promote leaves to the tail until it holds the last element kept
+        PersistentVector<E> v = this;
+        int leafStart = (newSize - 1) & ~MASK;
+        while (v.tailOffset() > leafStart) {
+            v = new PersistentVector<E>(v.tailOffset() + 1, v.shift, v.root,
+                    new Object[1]).minusLast();
+        }
+        if (v.size == newSize)
+            return v;
+        return new PersistentVector<E>(newSize, v.shift, v.root,
+                Arrays.copyOf(v.tail, newSize - leafStart));
+    }
+
+    /**
+     * Appends a range of an array, filling each new tail before pushing it
+     * into the trie.
+     */
+    private PersistentVector<E> plusAll(Object[] elements, int from, int to) {
+
+        if (from == to)
+            return this;
+
+        PersistentVector<E> v = this;
+        int i = from;
+
+        // top up the current tail
+        int tailSize = v.size - v.tailOffset();
+        if (tailSize < WIDTH) {
+            int n = Math.min(WIDTH - tailSize, to - i);
+            Object[] newTail = Arrays.copyOf(v.tail, tailSize + n);
+            System.arraycopy(elements, i, newTail, tailSize, n);
+            v = new PersistentVector<E>(v.size + n, v.shift, v.root, newTail);
+            i += n;
+        }
+
+        // then push full leaves, each built in place
+        while (i < to) {
+            int n = Math.min(WIDTH, to - i);
+            Object[] leaf = Arrays.copyOfRange(elements, i, i + n);
+            v = v.pushLeaf(leaf);
+            i += n;
+        }
+        return v;
+    }
+
+    /**
+     * Pushes the full tail into the trie and makes a leaf the new tail.
+     */
+    private PersistentVector<E> pushLeaf(Object[] leaf) {
+        Object[] newRoot;
+        int newShift = shift;
+        if ((size >>> BITS) > (1 << shift)) {
+            // the trie is full; add a level
+            newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            newRoot[1] = newPath(shift, tail);
+            newShift += BITS;
+        }
+        else {
+            newRoot = pushTail(size, shift, root, tail);
+        }
+        return new PersistentVector<E>(size + leaf.length, newShift, newRoot,
+                leaf);
+    }
+
+    private static Object[] pushTail(int size, int level, Object[] parent,
+            Object[] tail) {
+        int sub = ((size - 1) >>> level) & MASK;
+        Object[] node = parent.clone();
+        if (level == BITS) {
+            node[sub] = tail;
+        }
+        else {
+            Object[] child = (Object[]) parent[sub];
+            node[sub] = child != null ? pushTail(size, level - BITS, child,
+                    tail) : newPath(level - BITS, tail);
+        }
+        return node;
+    }
+
+    private static Object[] newPath(int level, Object[] leaf) {
+        if (level == 0)
+            return leaf;
+        Object[] node = new Object[WIDTH];
+        node[0] = newPath(level - BITS, leaf);
+        return node;
+    }
+
+    private static Object[] replace(int level, Object[] parent, int index,
+            Object element) {
+        Object[] node = parent.clone();
+        if (level == 0) {
+            node[index & MASK] = element;
+        }
+        else {
+            int sub = (index >>> level) & MASK;
+            node[sub] = replace(level - BITS, (Object[]) parent[sub], index,
+                    element);
+        }
+        return node;
+    }
+
+    private static Object[] popTail(int size, int level, Object[] parent) {
+        int sub = ((size - 2) >>> level) & MASK;
+        if (level > BITS) {
+            Object[] child = popTail(size, level - BITS,
+                    (Object[]) parent[sub]);
+            if (child == null && sub == 0)
+                return null;
+            Object[] node = parent.clone();
+            node[sub] = child;
+            return node;
+        }
+        if (sub == 0)
+            return null;
+        Object[] node = parent.clone();
+        node[sub] = null;
+        return node;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index
+                    + ", Size: " + size);
+    }
+
+    private void checkPosition(int index) {
+        if (index < 0 || index > size)
+            throw new IndexOutOfBoundsException("Index: " + index
+                    + ", Size: " + size);
+    }
+}
@@ -0,0 +1,124 @@
+package platypus.util.general;
+
+/**
+ * A reusable stopwatch based on <code>System.nanoTime()</code>. Elapsed time
+ * accumulates across successive start and stop calls until the stopwatch is
+ * reset.
+ * <p>
+ * A <code>Stopwatch</code> is not thread-safe; each thread timing work should
+ * use its own instance and record its results into a shared
+ * {@link LatencyHistogram} if needed.
+ *
+ * @author Jingchen Xu
+ */
+public class Stopwatch {
+
+    private boolean running = false;
+
+    private long startTime;
+
+    private long elapsed = 0;
+
+    /**
+     * Creates a new stopped Stopwatch.
+     */
+    public Stopwatch() {
+    }
+
+    /**
+     * Creates and starts a new Stopwatch.
+     *
+     * @return the started stopwatch
+     */
+    public static Stopwatch createStarted() {
+        return new Stopwatch().start();
+    }
+
+    /**
+     * Starts the stopwatch. Has no effect if it is already running.
+     *
+     * @return this stopwatch
+     */
+    public Stopwatch start() {
+        if (!running) {
+            startTime = System.nanoTime();
+            running = true;
+        }
+        return this;
+    }
+
+    /**
+     * Stops the stopwatch. Has no effect if it is not running.
+     *
+     * @return the total elapsed time in nanoseconds
+     */
+    public long stop() {
+        if (running) {
+            elapsed += System.nanoTime() - startTime;
+            running = false;
+        }
+        return elapsed;
+    }
+
+    /**
+     * Stops the stopwatch and clears the elapsed time.
+     *
+     * @return this stopwatch
+     */
+    public Stopwatch reset() {
+        running = false;
+        elapsed = 0;
+        return this;
+    }
+
+    /**
+     * Clears the elapsed time and starts the stopwatch again, returning the
+     * time elapsed before the restart. Useful for timing consecutive laps.
+     *
+     * @return the total elapsed time in nanoseconds before the restart
+     */
+    public long restart() {
+        long now = System.nanoTime();
+        long total = running ? elapsed + now - startTime : elapsed;
+        elapsed = 0;
+        startTime = now;
+        running = true;
+        return total;
+    }
+
+    /**
+     * Stops the stopwatch and records the elapsed time into a histogram.
+     *
+     * @param histogram the histogram to record into
+     * @return the total elapsed time in nanoseconds
+     */
+    public long stopAndRecord(LatencyHistogram histogram) {
+        long total = stop();
+        histogram.recordValue(total);
+        return total;
+    }
+
+    /**
+     * Returns whether the stopwatch is running.
+     *
+     * @return true if the stopwatch has been started and not stopped
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Returns the total elapsed time, including the current run if the
+     * stopwatch is running.
+     *
+     * @return the elapsed time in nanoseconds
+     */
+    public long elapsedNanos() {
+        return running ? elapsed + System.nanoTime() - startTime : elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return PUnitUtils.formatDuration(elapsedNanos());
+    }
+}
@@ -0,0 +1,286 @@
+package platypus.util.general;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * A <code>TextFilePipeline</code> applies a chain of line transformations to
+ * a text file, writing the transformed lines to another file. The input is
+ * memory-mapped and split at line boundaries into chunks, which are
+ * transformed in parallel on a <code>ForkJoinPool</code>. Chunks are written
+ * to the output in their original order, so the output contains the
+ * transformed lines in the same order as the input.
+ * <p>
+ * Line terminators (<code>"\n"</code> or <code>"\r\n"</code>) are preserved.
+ * The input charset must encode <code>'\n'</code> as the single byte
+ * <code>0x0A</code>, as is the case for UTF-8 and the ISO-8859 family, since
+ * chunk boundaries are located on the raw bytes.
+ * <p>
+ * Transformations are applied from several threads at once and must therefore
+ * be thread-safe. All of the transformations provided by this class are.
+ *
+ * @author Jingchen Xu
+ */
+public class TextFilePipeline {
+
+    /**
+     * A transformation applied to each line of a file.
+     */
+    public interface Transform {
+
+        /**
+         * Transforms a single line of text.
+         *
+         * @param line the line to transform, without its line terminator
+         * @return the transformed line
+         */
+        String apply(String line);
+    }
+
+    /** Applies {@link PStringUtils#titleFormat(String, String...)}. */
+    public static final Transform TITLE_FORMAT = new Transform() {
+        @Override
+        public String apply(String line) {
+            return PStringUtils.titleFormat(line);
+        }
+    };
+
+    /** Applies {@link PStringUtils#titleFormatIgnoreTransitive(String)}. */
+    public static final Transform TITLE_FORMAT_IGNORE_TRANSITIVE = new Transform() {
+        @Override
+        public String apply(String line) {
+            return PStringUtils.titleFormatIgnoreTransitive(line);
+        }
+    };
+
+    /** Applies {@link PStringUtils#positiveIntValidation(String)}. */
+    public static final Transform POSITIVE_INT_VALIDATION = new Transform() {
+        @Override
+        public String apply(String line) {
+            return PStringUtils.positiveIntValidation(line);
+        }
+    };
+
+    /**
+     * Applies {@link PStringUtils#extractIntegers(String)}, separating the
+     * integers found with single spaces.
+     */
+    public static final Transform EXTRACT_INTEGERS = new Transform() {
+        @Override
+        public String apply(String line) {
+            StringBuilder sb = new StringBuilder();
+            for (Integer i : PStringUtils.extractIntegers(line)) {
+                if (sb.length() > 0)
+                    sb.append(' ');
+                sb.append(i);
+            }
+            return sb.toString();
+        }
+    };
+
+    /** The default target size of a chunk. */
+    public static final int DEFAULT_CHUNK_SIZE = (int) (8
+            * PUnitUtils.BYTES_PER_MEBIBYTE);
+
+    private final List<Transform> transforms;
+
+    private final Charset charset;
+
+    private final int chunkSize;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a new TextFilePipeline using the default charset, default chunk
+     * size and a new pool with one thread per processor for each file
+     * processed.
+     *
+     * @param transforms the transformations to apply to each line, in order
+     */
+    public TextFilePipeline(Transform... transforms) {
+        this(Arrays.asList(transforms), Charset.defaultCharset(),
+                DEFAULT_CHUNK_SIZE, null);
+    }
+
+    /**
+     * Creates a new TextFilePipeline.
+     *
+     * @param transforms the transformations to apply to each line, in order
+     * @param charset the charset of the input and output files
+     * @param chunkSize the target size of a chunk in bytes. Chunks are
+     *        extended as needed to hold lines longer than this.
+     * @param pool the pool to transform chunks on. If null, a new pool is
+     *        created and shut down for each file processed.
+     */
+    public TextFilePipeline(List<Transform> transforms, Charset charset,
+            int chunkSize, ForkJoinPool pool) {
+
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("Chunk size must be positive");
+        if (!Arrays.equals(new byte[] { '\n' }, "\n".getBytes(charset)))
+            throw new IllegalArgumentException(
+                    "Charset must encode line feeds as a single byte");
+
+        this.transforms = Collections
+                .unmodifiableList(new ArrayList<Transform>(transforms));
+        this.charset = charset;
+        this.chunkSize = chunkSize;
+        this.pool = pool;
+    }
+
+    /**
+     * Transforms every line of the input file and writes the results to the
+     * output file. If the output file exists, it is overwritten.
+     *
+     * @param input the file to read
+     * @param output the file to write
+     * @throws IOException if either file cannot be accessed, or if the input
+     *         is not valid in the pipeline's charset
+     */
+    public void process(File input, File output) throws IOException {
+
+        ForkJoinPool executor = pool != null ? pool : new ForkJoinPool();
+        ArrayDeque<Future<ByteBuffer>> pending = new ArrayDeque<Future<ByteBuffer>>();
+
+        try (FileChannel in = FileChannel.open(input.toPath(),
+                StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(output.toPath(),
+                        StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            // bound the chunks held in memory while keeping all threads busy
+            int maxPending = executor.getParallelism() * 2;
+
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                final MappedByteBuffer chunk = mapChunk(in, position, size);
+                position += chunk.limit();
+
+                pending.add(executor.submit(new Callable<ByteBuffer>() {
+                    @Override
+                    public ByteBuffer call() throws CharacterCodingException {
+                        return transformChunk(chunk);
+                    }
+                }));
+
+                if (pending.size() >= maxPending)
+                    write(out, pending.poll());
+            }
+
+            while (!pending.isEmpty())
+                write(out, pending.poll());
+        }
+        finally {
+            // after a failure, the remaining chunks would only be discarded
+            for (Future<ByteBuffer> result : pending)
+                result.cancel(true);
+            if (pool == null)
+                executor.shutdown();
+        }
+    }
+
+    /**
+     * Maps the chunk starting at the specified position. The chunk ends after
+     * the last line feed within the target chunk size, or at the end of the
+     * file.
+     */
+    private MappedByteBuffer mapChunk(FileChannel in, long position, long size)
+            throws IOException {
+
+        long length = chunkSize;
+        while (true) {
+            length = Math.min(length, size - position);
+            MappedByteBuffer buf = in.map(FileChannel.MapMode.READ_ONLY,
+                    position, length);
+
+            if (position + length == size)
+                return buf;
+
+            for (int i = (int) length - 1; i >= 0; i--) {
+                if (buf.get(i) == '\n') {
+                    buf.limit(i + 1);
+                    return buf;
+                }
+            }
+
+            // no line feed in range; the line is longer than a chunk
+            if (length >= Integer.MAX_VALUE)
+                throw new IOException("Line exceeds maximum chunk size");
+            length = Math.min(length * 2, Integer.MAX_VALUE);
+        }
+    }
+
+    private ByteBuffer transformChunk(ByteBuffer chunk)
+            throws CharacterCodingException {
+
+        CharBuffer chars = charset.newDecoder().decode(chunk);
+        StringBuilder output = new StringBuilder(chars.length());
+
+        int start = 0;
+        int length = chars.length();
+        while (start < length) {
+
+            // find the end of the line and its terminator
+            int end = start;
+            while (end < length && chars.get(end) != '\n')
+                end++;
+            int contentEnd = end;
+            if (end < length && end > start && chars.get(end - 1) == '\r')
+                contentEnd--;
+
+            String line = chars.subSequence(start, contentEnd).toString();
+            for (Transform t : transforms)
+                line = t.apply(line);
+
+            output.append(line);
+            if (end < length)
+                output.append(chars, contentEnd, end + 1);
+
+            start = end + 1;
+        }
+
+        return charset.newEncoder().encode(CharBuffer.wrap(output));
+    }
+
+    private static void write(FileChannel out, Future<ByteBuffer> result)
+            throws IOException {
+
+        ByteBuffer buf;
+        try {
+            buf = result.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while transforming");
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new IOException(cause);
+        }
+
+        while (buf.hasRemaining())
+            out.write(buf);
+    }
+}
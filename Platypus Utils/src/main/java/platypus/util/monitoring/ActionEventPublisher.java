@@ -0,0 +1,69 @@
+package platypus.util.monitoring;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.concurrent.Executor;
+
+/**
+ * An <code>ActionEventPublisher</code> is an <code>ActionListener</code>
+ * which publishes the events it receives to {@link Flow.Subscriber}s, so
+ * sources such as {@link ListenedList} and {@link ClipboardMonitor} can feed
+ * slow consumers without blocking or flooding them. The publisher is
+ * normally obtained from the source's <code>publish</code> method, which
+ * also detaches it from the source when it is closed.
+ * <p>
+ * Events are delivered asynchronously. An event's source may have changed
+ * again by the time the event is delivered.
+ *
+ * @author Jingchen Xu
+ */
+public class ActionEventPublisher extends BufferedPublisher<ActionEvent>
+        implements ActionListener {
+
+    /**
+     * Creates a new ActionEventPublisher with the default buffer size, which
+     * drops the oldest events on overflow.
+     */
+    public ActionEventPublisher() {
+        super();
+    }
+
+    /**
+     * Creates a new ActionEventPublisher which delivers events on the shared
+     * daemon pool.
+     *
+     * @param bufferSize the number of events buffered for each subscriber
+     * @param strategy what to do when a subscriber's buffer is full
+     */
+    public ActionEventPublisher(int bufferSize, OverflowStrategy strategy) {
+        super(bufferSize, strategy);
+    }
+
+    /**
+     * Creates a new ActionEventPublisher.
+     *
+     * @param bufferSize the number of events buffered for each subscriber
+     * @param strategy what to do when a subscriber's buffer is full
+     * @param executor the executor on which events are delivered
+     */
+    public ActionEventPublisher(int bufferSize, OverflowStrategy strategy,
+            Executor executor) {
+        super(bufferSize, strategy, executor);
+    }
+
+    /**
+     * Publishes the event. Events received after the publisher is closed are
+     * ignored.
+     *
+     * @param e the event to publish
+     */
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        try {
+            submit(e);
+        }
+        catch (IllegalStateException ex) {
+            // closed
+        }
+    }
+}
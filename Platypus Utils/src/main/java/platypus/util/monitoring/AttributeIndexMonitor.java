@@ -0,0 +1,163 @@
+package platypus.util.monitoring;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import platypus.util.general.AttributeIndex;
+import platypus.util.monitoring.DirectoryMonitor.DirectoryEvent;
+
+/**
+ * An <code>AttributeIndexMonitor</code> keeps an {@link AttributeIndex}
+ * current with changes made without going through <code>PFileUtils</code>.
+ * It watches each root directory of the index with a
+ * {@link DirectoryMonitor}, including roots added after it is started, and
+ * re-reads changed files in batches on a background thread.
+ * <p>
+ * A root inside another watched root is not watched separately. While
+ * running, the monitor keeps its index reachable, so it must be ended before
+ * the index is discarded.
+ *
+ * @author Jingchen Xu
+ */
+public class AttributeIndexMonitor {
+
+    private final AttributeIndex index;
+
+    // root path -> its monitor while running, guarded by this
+    private Map<String, DirectoryMonitor> monitors = null;
+
+    private final ActionListener rootListener = new ActionListener() {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            try {
+                watch(new File(e.getActionCommand()));
+            }
+            catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        }
+    };
+
+    private final ActionListener changeListener = new ActionListener() {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            changed((DirectoryEvent) e);
+        }
+    };
+
+    /**
+     * Creates a new AttributeIndexMonitor.
+     *
+     * @param index the index to keep current
+     */
+    public AttributeIndexMonitor(AttributeIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Starts watching the roots of the index. Has no effect if the monitor is
+     * already running.
+     *
+     * @throws IOException if the directories cannot be watched
+     */
+    public synchronized void start() throws IOException {
+
+        if (monitors != null)
+            return;
+
+        monitors = new HashMap<String, DirectoryMonitor>();
+        index.addActionListener(rootListener);
+        try {
+            for (File root : index.getRoots())
+                watch(root);
+        }
+        catch (IOException e) {
+            end();
+            throw e;
+        }
+    }
+
+    /**
+     * Stops watching the roots of the index.
+     */
+    public synchronized void end() {
+
+        if (monitors == null)
+            return;
+
+        index.removeActionListener(rootListener);
+        for (DirectoryMonitor monitor : monitors.values())
+            unwatch(monitor);
+        monitors = null;
+    }
+
+    /**
+     * Returns whether the monitor is watching the roots of the index.
+     *
+     * @return true if the monitor has been started and not ended
+     */
+    public synchronized boolean isRunning() {
+        return monitors != null;
+    }
+
+    /**
+     * Starts a monitor for a root unless it is already watched, replacing
+     * the monitors of any watched roots inside it.
+     */
+    private synchronized void watch(File root) throws IOException {
+        if (monitors == null || !root.isDirectory())
+            return;
+
+        String rootPath = root.getAbsolutePath();
+        for (String watched : monitors.keySet()) {
+            if (isUnder(rootPath, watched))
+                return;
+        }
+
+        DirectoryMonitor monitor = new DirectoryMonitor(root);
+        monitor.setDaemon(true);
+        monitor.addActionListener(changeListener);
+        monitor.start();
+
+        Iterator<Map.Entry<String, DirectoryMonitor>> it = monitors
+                .entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, DirectoryMonitor> entry = it.next();
+            if (isUnder(entry.getKey(), rootPath)) {
+                unwatch(entry.getValue());
+                it.remove();
+            }
+        }
+        monitors.put(rootPath, monitor);
+    }
+
+    private void unwatch(DirectoryMonitor monitor) {
+        monitor.removeActionListener(changeListener);
+        monitor.end();
+    }
+
+    private void changed(DirectoryEvent e) {
+
+        // directories are reported as modified whenever their contents
+        // change, and their contents are reported individually
+        for (File file : e.getDeleted())
+            index.update(file);
+        for (File file : e.getCreated()) {
+            if (file.isFile())
+                index.update(file);
+        }
+        for (File file : e.getModified()) {
+            if (file.isFile())
+                index.update(file);
+        }
+    }
+
+    private static boolean isUnder(String path, String root) {
+        return path.equals(root) || path.startsWith(root + File.separator);
+    }
+}
@@ -0,0 +1,472 @@
+package platypus.util.monitoring;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A <code>BufferedPublisher</code> is a {@link Flow.Publisher} which delivers
+ * submitted items to each subscriber asynchronously, as the subscriber
+ * requests them. Every subscriber has its own bounded buffer, so a slow
+ * subscriber never delays the others, and what happens when its buffer is
+ * full is decided by the publisher's {@link OverflowStrategy}.
+ * <p>
+ * Items are delivered on threads of the publisher's executor, by default a
+ * shared pool of daemon threads. Items submitted by one thread are delivered
+ * to each subscriber in submission order. When the publisher is closed,
+ * subscribers receive the items still buffered and then
+ * <code>onComplete</code>; when it is closed exceptionally, buffered items
+ * are discarded and subscribers receive <code>onError</code> immediately.
+ *
+ * @author Jingchen Xu
+ * @param <T> the type of items published
+ */
+public class BufferedPublisher<T> implements Flow.Publisher<T>, Closeable {
+
+    /**
+     * What a publisher does with an item submitted while a subscriber's
+     * buffer is full.
+     */
+    public enum OverflowStrategy {
+
+        /** Discards the oldest buffered item to make room. */
+        DROP_OLDEST,
+
+        /** Discards the submitted item. */
+        DROP_NEWEST,
+
+        /**
+         * Discards every buffered item, keeping only the submitted one, so
+         * the subscriber skips straight to the most recent state.
+         */
+        LATEST,
+
+        /**
+         * Blocks the submitting thread until the subscriber requests more
+         * items. Subscribers must not submit to the same publisher from
+         * <code>onNext</code> under this strategy.
+         */
+        BLOCK
+    }
+
+    /** The default number of items buffered for each subscriber. */
+    public static final int DEFAULT_BUFFER_SIZE = 256;
+
+    private static final Executor DEFAULT_EXECUTOR = Executors
+            .newCachedThreadPool(new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "BufferedPublisher-"
+                            + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+
+    private final int bufferSize;
+
+    private final OverflowStrategy strategy;
+
+    private final Executor executor;
+
+    private final CopyOnWriteArrayList<BufferedSubscription> subscriptions = new CopyOnWriteArrayList<BufferedSubscription>();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private volatile boolean closed = false;
+
+    private volatile Throwable failure = null;
+
+    /**
+     * Creates a new BufferedPublisher with the default buffer size, which
+     * drops the oldest items on overflow.
+     */
+    public BufferedPublisher() {
+        this(DEFAULT_BUFFER_SIZE, OverflowStrategy.DROP_OLDEST);
+    }
+
+    /**
+     * Creates a new BufferedPublisher which delivers items on the shared
+     * daemon pool.
+     *
+     * @param bufferSize the number of items buffered for each subscriber
+     * @param strategy what to do when a subscriber's buffer is full
+     */
+    public BufferedPublisher(int bufferSize, OverflowStrategy strategy) {
+        this(bufferSize, strategy, DEFAULT_EXECUTOR);
+    }
+
+    /**
+     * Creates a new BufferedPublisher.
+     *
+     * @param bufferSize the number of items buffered for each subscriber
+     * @param strategy what to do when a subscriber's buffer is full
+     * @param executor the executor on which items are delivered
+     */
+    public BufferedPublisher(int bufferSize, OverflowStrategy strategy,
+            Executor executor) {
+
+        if (bufferSize < 1)
+            throw new IllegalArgumentException("Buffer size must be positive");
+        if (strategy == null || executor == null)
+            throw new NullPointerException();
+
+        this.bufferSize = bufferSize;
+        this.strategy = strategy;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+
+        if (subscriber == null)
+            throw new NullPointerException();
+
+        BufferedSubscription subscription = new BufferedSubscription(
+                subscriber);
+        subscriptions.add(subscription);
+
+        // a subscriber arriving after close still gets its terminal signal
+        if (closed)
+            subscription.complete(failure);
+        subscription.signal();
+    }
+
+    /**
+     * Offers an item to every current subscriber, applying the overflow
+     * strategy to subscribers whose buffers are full. Under
+     * {@link OverflowStrategy#BLOCK} this waits until there is room for the
+     * item in every buffer; if the waiting thread is interrupted, the item is
+     * dropped for the remaining subscribers and the interrupt status is kept.
+     *
+     * @param item the item to publish
+     * @throws IllegalStateException if the publisher is closed
+     */
+    public void submit(T item) {
+
+        if (item == null)
+            throw new NullPointerException();
+        if (closed)
+            throw new IllegalStateException("Publisher is closed");
+
+        for (BufferedSubscription subscription : subscriptions)
+            subscription.offer(item);
+    }
+
+    /**
+     * Closes the publisher. Subscribers receive their buffered items and then
+     * <code>onComplete</code>.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (BufferedSubscription subscription : subscriptions)
+            subscription.complete(null);
+    }
+
+    /**
+     * Closes the publisher because of an error. Buffered items are discarded
+     * and subscribers receive <code>onError</code>.
+     *
+     * @param error the cause of the failure
+     */
+    public void closeExceptionally(Throwable error) {
+
+        if (error == null)
+            throw new NullPointerException();
+
+        failure = error;
+        closed = true;
+        for (BufferedSubscription subscription : subscriptions)
+            subscription.complete(error);
+    }
+
+    /**
+     * Returns whether this publisher is closed.
+     *
+     * @return true if the publisher is closed
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Returns the number of current subscribers.
+     *
+     * @return the number of subscribers
+     */
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Returns the number of items discarded across all subscribers because
+     * their buffers were full.
+     *
+     * @return the number of dropped items
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Returns the number of items buffered for each subscriber.
+     *
+     * @return the buffer size
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Returns what this publisher does when a subscriber's buffer is full.
+     *
+     * @return the overflow strategy
+     */
+    public OverflowStrategy getOverflowStrategy() {
+        return strategy;
+    }
+
+    /**
+     * The state of one subscriber. Delivery runs as a task on the executor,
+     * and at most one such task is active at a time.
+     */
+    private final class BufferedSubscription implements Flow.Subscription,
+            Runnable {
+
+        private final Flow.Subscriber<? super T> subscriber;
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final Condition notFull = lock.newCondition();
+
+        // guarded by lock
+        private final ArrayDeque<T> buffer = new ArrayDeque<T>();
+
+        // guarded by lock
+        private long demand = 0;
+
+        // guarded by lock
+        private boolean done = false;
+
+        // guarded by lock
+        private Throwable error = null;
+
+        // number of signals not yet seen by the delivery task
+        private final AtomicInteger pending = new AtomicInteger();
+
+        // only accessed by the delivery task
+        private boolean subscribed = false;
+
+        private volatile boolean cancelled = false;
+
+        BufferedSubscription(Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void offer(T item) {
+
+            lock.lock();
+            try {
+                if (cancelled || done)
+                    return;
+
+                if (buffer.size() >= bufferSize) {
+                    switch (strategy) {
+                    case DROP_OLDEST:
+                        buffer.poll();
+                        dropped.incrementAndGet();
+                        break;
+                    case DROP_NEWEST:
+                        dropped.incrementAndGet();
+                        return;
+                    case LATEST:
+                        dropped.addAndGet(buffer.size());
+                        buffer.clear();
+                        break;
+                    default:
+                        while (buffer.size() >= bufferSize && !cancelled
+                                && !done)
+                            notFull.await();
+                        if (cancelled || done)
+                            return;
+                    }
+                }
+                buffer.add(item);
+            }
+            catch (InterruptedException e) {
+                dropped.incrementAndGet();
+                Thread.currentThread().interrupt();
+                return;
+            }
+            finally {
+                lock.unlock();
+            }
+
+            signal();
+        }
+
+        void complete(Throwable e) {
+
+            lock.lock();
+            try {
+                if (done)
+                    return;
+                done = true;
+                if (e != null) {
+                    error = e;
+                    buffer.clear();
+                }
+                notFull.signalAll();
+            }
+            finally {
+                lock.unlock();
+            }
+
+            signal();
+        }
+
+        @Override
+        public void request(long n) {
+
+            lock.lock();
+            try {
+                if (n <= 0) {
+                    // rule 3.9 of the specification
+                    if (!done) {
+                        done = true;
+                        error = new IllegalArgumentException(
+                                "Non-positive request: " + n);
+                        buffer.clear();
+                        notFull.signalAll();
+                    }
+                }
+                else {
+                    demand += n;
+                    if (demand < 0)
+                        demand = Long.MAX_VALUE;
+                }
+            }
+            finally {
+                lock.unlock();
+            }
+
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+
+            cancelled = true;
+            subscriptions.remove(this);
+
+            lock.lock();
+            try {
+                buffer.clear();
+                notFull.signalAll();
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        void signal() {
+            if (pending.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this);
+                }
+                catch (RejectedExecutionException e) {
+                    pending.set(0);
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                deliver();
+                missed = pending.addAndGet(-missed);
+            }
+            while (missed != 0);
+        }
+
+        private void deliver() {
+
+            if (!subscribed) {
+                subscribed = true;
+                try {
+                    subscriber.onSubscribe(this);
+                }
+                catch (Throwable t) {
+                    cancel();
+                    t.printStackTrace();
+                    return;
+                }
+            }
+
+            while (!cancelled) {
+                T item = null;
+                Throwable terminal = null;
+                boolean complete = false;
+
+                lock.lock();
+                try {
+                    if (error != null) {
+                        terminal = error;
+                    }
+                    else if (demand > 0 && !buffer.isEmpty()) {
+                        item = buffer.poll();
+                        if (demand != Long.MAX_VALUE)
+                            demand--;
+                        notFull.signal();
+                    }
+                    else if (done && buffer.isEmpty()) {
+                        complete = true;
+                    }
+                    else {
+                        return;
+                    }
+                }
+                finally {
+                    lock.unlock();
+                }
+
+                if (terminal != null || complete) {
+                    cancelled = true;
+                    subscriptions.remove(this);
+                    try {
+                        if (terminal != null)
+                            subscriber.onError(terminal);
+                        else
+                            subscriber.onComplete();
+                    }
+                    catch (Throwable t) {
+                        t.printStackTrace();
+                    }
+                    return;
+                }
+
+                try {
+                    subscriber.onNext(item);
+                }
+                catch (Throwable t) {
+                    // a failing subscriber is treated as cancelled
+                    cancel();
+                    t.printStackTrace();
+                }
+            }
+        }
+    }
+}
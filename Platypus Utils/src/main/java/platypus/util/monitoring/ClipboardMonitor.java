@@ -141,6 +141,32 @@ public class ClipboardMonitor extends Thread implements ClipboardOwner {
         listeners.remove(l);
     }
 
+    /**
+     * Creates a publisher of this monitor's events for subscribers which
+     * cannot keep up with the rate of clipboard changes. The publisher is
+     * detached from this monitor when it is closed.
+     *
+     * @param bufferSize
+     *            the number of events buffered for each subscriber
+     * @param strategy
+     *            what to do when a subscriber's buffer is full
+     * @return the publisher
+     */
+    public ActionEventPublisher publish(int bufferSize,
+            BufferedPublisher.OverflowStrategy strategy) {
+
+        ActionEventPublisher publisher = new ActionEventPublisher(bufferSize,
+                strategy) {
+            @Override
+            public void close() {
+                removeActionListener(this);
+                super.close();
+            }
+        };
+        addActionListener(publisher);
+        return publisher;
+    }
+
     private void notifyListeners(String s) {
 
         synchronized (listeners) {
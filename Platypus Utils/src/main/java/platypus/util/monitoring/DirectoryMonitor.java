@@ -0,0 +1,490 @@
+package platypus.util.monitoring;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A <code>DirectoryMonitor</code> detects changes to the files in a directory
+ * tree and sends notifications through an ActionListener interface. It
+ * watches every directory in the tree with a <code>WatchService</code>,
+ * including directories created after monitoring starts, so changes are
+ * detected without rescanning the tree.
+ * <p>
+ * Changes are not reported one by one. Instead, they are collected until the
+ * tree has been quiet for the debounce interval, or until the maximum delay
+ * has passed, and then sent as a single {@link DirectoryEvent} listing the
+ * files created, modified and deleted. Successive changes to the same file
+ * are coalesced, so a file created and then deleted within one batch is not
+ * reported at all. If the operating system drops events, the affected
+ * directory is rescanned and compared against its last known contents.
+ * <p>
+ * The <code>DirectoryMonitor</code> operates on its own thread, which must be
+ * started manually. Listeners are notified on a separate dispatch thread, so
+ * slow listeners never cause changes to be missed.
+ *
+ * @author Jingchen Xu
+ */
+public class DirectoryMonitor extends Thread {
+
+    /** The default time the tree must be quiet before changes are sent. */
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 100;
+
+    private enum Change {
+        CREATED, MODIFIED, DELETED
+    }
+
+    private final Path root;
+
+    private final long debounceMillis;
+
+    private final long maxDelayMillis;
+
+    private final WatchService watchService;
+
+    private final Map<WatchKey, Path> keys = new HashMap<WatchKey, Path>();
+
+    // last known contents of each watched directory, with modification times
+    private final Map<Path, Map<Path, Long>> snapshots = new HashMap<Path, Map<Path, Long>>();
+
+    private final ScheduledExecutorService dispatcher;
+
+    private final ArrayList<ActionListener> listeners = new ArrayList<ActionListener>();
+
+    private String command = "";
+
+    // guarded by pending
+    private final Map<Path, Change> pending = new LinkedHashMap<Path, Change>();
+
+    private ScheduledFuture<?> flushTask = null;
+
+    private long firstPendingTime;
+
+    private final AtomicBoolean end = new AtomicBoolean();
+
+    /**
+     * Creates a new DirectoryMonitor with the default debounce interval.
+     *
+     * @param root the directory tree to watch
+     * @throws IOException if the tree cannot be watched
+     */
+    public DirectoryMonitor(File root) throws IOException {
+        this(root, DEFAULT_DEBOUNCE_MILLIS, DEFAULT_DEBOUNCE_MILLIS * 10);
+    }
+
+    /**
+     * Creates a new DirectoryMonitor. The tree is registered immediately, so
+     * changes made after this returns are detected once the monitor is
+     * started.
+     *
+     * @param root the directory tree to watch
+     * @param debounceMillis the time in milliseconds the tree must be quiet
+     *        before collected changes are sent
+     * @param maxDelayMillis the maximum time in milliseconds a change is held
+     *        back while the tree keeps changing
+     * @throws IOException if the tree cannot be watched
+     */
+    public DirectoryMonitor(File root, long debounceMillis,
+            long maxDelayMillis) throws IOException {
+        super("DirectoryMonitor " + root);
+
+        if (!root.isDirectory())
+            throw new IllegalArgumentException("Not a directory: " + root);
+
+        this.root = root.toPath().toAbsolutePath();
+        this.debounceMillis = debounceMillis;
+        this.maxDelayMillis = Math.max(debounceMillis, maxDelayMillis);
+
+        dispatcher = Executors
+                .newSingleThreadScheduledExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, getName() + " dispatcher");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+
+        watchService = FileSystems.getDefault().newWatchService();
+        registerTree(this.root, false);
+    }
+
+    /**
+     * Returns the root of the watched tree.
+     *
+     * @return the root directory
+     */
+    public File getRoot() {
+        return root.toFile();
+    }
+
+    /**
+     * Sets the action command of events sent by this monitor.
+     *
+     * @param command the action command
+     */
+    public void setActionCommand(String command) {
+        this.command = command;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!end.get()) {
+                WatchKey key = watchService.take();
+                Path dir = keys.get(key);
+
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (dir == null)
+                        break;
+
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        rescan(dir);
+                        continue;
+                    }
+
+                    Path child = dir.resolve((Path) event.context());
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE)
+                        created(dir, child);
+                    else if (event.kind() == StandardWatchEventKinds.ENTRY_MODIFY)
+                        modified(dir, child);
+                    else
+                        deleted(dir, child);
+                }
+
+                if (!key.reset()) {
+                    keys.remove(key);
+                    snapshots.remove(dir);
+                }
+            }
+        }
+        catch (ClosedWatchServiceException e) {
+            // ended
+        }
+        catch (InterruptedException e) {
+            // ended
+        }
+    }
+
+    /**
+     * Stops watching the tree. Changes already collected are still sent.
+     * Calling this more than once has no further effect.
+     */
+    public void end() {
+        if (!end.compareAndSet(false, true))
+            return;
+        try {
+            watchService.close();
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        dispatcher.execute(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        });
+        dispatcher.shutdown();
+    }
+
+    private void created(Path dir, Path child) {
+        record(child, Change.CREATED);
+        snapshotEntry(dir, child);
+
+        // files may appear in a new directory before it is registered
+        if (child.toFile().isDirectory())
+            registerTree(child, true);
+    }
+
+    private void modified(Path dir, Path child) {
+        record(child, Change.MODIFIED);
+        snapshotEntry(dir, child);
+    }
+
+    private void deleted(Path dir, Path child) {
+        record(child, Change.DELETED);
+        Map<Path, Long> snapshot = snapshots.get(dir);
+        if (snapshot != null)
+            snapshot.remove(child);
+        forgetTree(child);
+    }
+
+    /**
+     * Compares a directory against its last known contents, recording the
+     * differences as changes.
+     */
+    private void rescan(Path dir) {
+
+        Map<Path, Long> previous = snapshots.get(dir);
+        if (previous == null)
+            previous = Collections.emptyMap();
+        Map<Path, Long> current = list(dir);
+
+        for (Map.Entry<Path, Long> entry : current.entrySet()) {
+            Long before = previous.get(entry.getKey());
+            if (before == null) {
+                record(entry.getKey(), Change.CREATED);
+                if (entry.getKey().toFile().isDirectory())
+                    registerTree(entry.getKey(), true);
+            }
+            else if (!before.equals(entry.getValue())) {
+                record(entry.getKey(), Change.MODIFIED);
+            }
+        }
+        for (Path child : previous.keySet()) {
+            if (!current.containsKey(child)) {
+                record(child, Change.DELETED);
+                forgetTree(child);
+            }
+        }
+
+        snapshots.put(dir, current);
+    }
+
+    /**
+     * Registers a directory and all directories below it, optionally
+     * recording everything found as created.
+     */
+    private void registerTree(Path dir, boolean report) {
+        try {
+            WatchKey key = dir.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            keys.put(key, dir);
+        }
+        catch (ClosedWatchServiceException e) {
+            return;
+        }
+        catch (IOException e) {
+            // the directory was removed before it could be registered
+            return;
+        }
+
+        Map<Path, Long> contents = list(dir);
+        snapshots.put(dir, contents);
+        for (Path child : contents.keySet()) {
+            if (report)
+                record(child, Change.CREATED);
+            if (child.toFile().isDirectory())
+                registerTree(child, report);
+        }
+    }
+
+    /**
+     * Records the deletion of everything known below a deleted directory.
+     */
+    private void forgetTree(Path dir) {
+        Map<Path, Long> contents = snapshots.remove(dir);
+        if (contents == null)
+            return;
+        for (Path child : contents.keySet()) {
+            record(child, Change.DELETED);
+            forgetTree(child);
+        }
+    }
+
+    private void snapshotEntry(Path dir, Path child) {
+        Map<Path, Long> snapshot = snapshots.get(dir);
+        if (snapshot != null)
+            snapshot.put(child, child.toFile().lastModified());
+    }
+
+    private static Map<Path, Long> list(Path dir) {
+        Map<Path, Long> contents = new HashMap<Path, Long>();
+        File[] children = dir.toFile().listFiles();
+        if (children != null) {
+            for (File child : children)
+                contents.put(child.toPath(), child.lastModified());
+        }
+        return contents;
+    }
+
+    private void record(Path path, Change change) {
+
+        synchronized (pending) {
+            Change merged = merge(pending.get(path), change);
+            if (merged == null)
+                pending.remove(path);
+            else
+                pending.put(path, merged);
+
+            // wait for a quiet period, but never past the maximum delay
+            long now = System.currentTimeMillis();
+            if (flushTask == null)
+                firstPendingTime = now;
+            else
+                flushTask.cancel(false);
+
+            long delay = Math.min(debounceMillis,
+                    firstPendingTime + maxDelayMillis - now);
+            try {
+                flushTask = dispatcher.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        flush();
+                    }
+                }, Math.max(0, delay), TimeUnit.MILLISECONDS);
+            }
+            catch (RuntimeException e) {
+                // the monitor has ended
+                flushTask = null;
+            }
+        }
+    }
+
+    /**
+     * Combines a change to a path with the change already pending for it.
+     *
+     * @return the combined change, or null if they cancel out
+     */
+    private static Change merge(Change previous, Change next) {
+        if (previous == null)
+            return next;
+
+        switch (next) {
+        case CREATED:
+            return previous == Change.DELETED ? Change.MODIFIED : previous;
+        case DELETED:
+            return previous == Change.CREATED ? null : Change.DELETED;
+        default:
+            return previous == Change.CREATED ? Change.CREATED
+                    : Change.MODIFIED;
+        }
+    }
+
+    private void flush() {
+
+        Set<File> created = new LinkedHashSet<File>();
+        Set<File> modified = new LinkedHashSet<File>();
+        Set<File> deleted = new LinkedHashSet<File>();
+
+        synchronized (pending) {
+            flushTask = null;
+            if (pending.isEmpty())
+                return;
+
+            for (Map.Entry<Path, Change> entry : pending.entrySet()) {
+                File file = entry.getKey().toFile();
+                switch (entry.getValue()) {
+                case CREATED:
+                    created.add(file);
+                    break;
+                case MODIFIED:
+                    modified.add(file);
+                    break;
+                default:
+                    deleted.add(file);
+                }
+            }
+            pending.clear();
+        }
+
+        notifyListeners(new DirectoryEvent(this, command, created, modified,
+                deleted));
+    }
+
+    /**
+     * Adds an <code>ActionListener</code> to the monitor.
+     *
+     * @param l the <code>ActionListener</code> to be added
+     */
+    public void addActionListener(ActionListener l) {
+        synchronized (listeners) {
+            listeners.add(l);
+        }
+    }
+
+    /**
+     * Removes an <code>ActionListener</code> from the monitor.
+     *
+     * @param l the <code>ActionListener</code> to be removed
+     */
+    public void removeActionListener(ActionListener l) {
+        synchronized (listeners) {
+            listeners.remove(l);
+        }
+    }
+
+    private void notifyListeners(DirectoryEvent e) {
+
+        synchronized (listeners) {
+            for (int i = 0; i < listeners.size(); i++)
+                listeners.get(i).actionPerformed(e);
+        }
+    }
+
+    /**
+     * An <code>ActionEvent</code> listing the files which changed in a
+     * monitored tree since the previous event.
+     */
+    public static class DirectoryEvent extends ActionEvent {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Set<File> created;
+
+        private final Set<File> modified;
+
+        private final Set<File> deleted;
+
+        DirectoryEvent(Object source, String command, Set<File> created,
+                Set<File> modified, Set<File> deleted) {
+            super(source, ACTION_PERFORMED, command);
+            this.created = Collections.unmodifiableSet(created);
+            this.modified = Collections.unmodifiableSet(modified);
+            this.deleted = Collections.unmodifiableSet(deleted);
+        }
+
+        /**
+         * Returns the files and directories created.
+         *
+         * @return the created files
+         */
+        public Set<File> getCreated() {
+            return created;
+        }
+
+        /**
+         * Returns the files and directories modified. Directories are
+         * reported as modified when their contents change.
+         *
+         * @return the modified files
+         */
+        public Set<File> getModified() {
+            return modified;
+        }
+
+        /**
+         * Returns the files and directories deleted.
+         *
+         * @return the deleted files
+         */
+        public Set<File> getDeleted() {
+            return deleted;
+        }
+    }
+}
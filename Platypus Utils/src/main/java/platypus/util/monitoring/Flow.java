@@ -0,0 +1,91 @@
+package platypus.util.monitoring;
+
+/**
+ * Interfaces for demand-driven publishing of items from a producer to
+ * subscribers. These mirror <code>java.util.concurrent.Flow</code> and the
+ * Reactive Streams specification, so subscribers written against them carry
+ * over unchanged; only the imports differ.
+ * <p>
+ * A {@link Subscriber} receives items only after requesting them through its
+ * {@link Subscription}, and its methods are never called concurrently for
+ * the same subscription.
+ *
+ * @author Jingchen Xu
+ */
+public final class Flow {
+
+    private Flow() {
+    }
+
+    /**
+     * A producer of items received by subscribers.
+     *
+     * @param <T> the type of items published
+     */
+    public interface Publisher<T> {
+
+        /**
+         * Adds a subscriber. Its <code>onSubscribe</code> method is called
+         * with a new subscription before any other method.
+         *
+         * @param subscriber the subscriber
+         */
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    /**
+     * A receiver of items from a publisher.
+     *
+     * @param <T> the type of items received
+     */
+    public interface Subscriber<T> {
+
+        /**
+         * Called before any other method with the subscription through which
+         * items are requested.
+         *
+         * @param subscription the new subscription
+         */
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * Called with the next item, once for each item requested.
+         *
+         * @param item the item
+         */
+        void onNext(T item);
+
+        /**
+         * Called when the publisher fails. No further methods are called.
+         *
+         * @param throwable the cause of the failure
+         */
+        void onError(Throwable throwable);
+
+        /**
+         * Called when the publisher has no further items. No further methods
+         * are called.
+         */
+        void onComplete();
+    }
+
+    /**
+     * The link between a publisher and one of its subscribers.
+     */
+    public interface Subscription {
+
+        /**
+         * Adds to the number of items the subscriber is ready to receive.
+         * A non-positive count fails the subscription.
+         *
+         * @param n the number of additional items
+         */
+        void request(long n);
+
+        /**
+         * Stops delivery of items to the subscriber. Items may still arrive
+         * for a short while after this is called.
+         */
+        void cancel();
+    }
+}
@@ -0,0 +1,376 @@
+package platypus.util.monitoring;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * A <code>HeapMonitor</code> detects memory pressure in the Java heap and
+ * sends notifications through an ActionListener interface. Notifications are
+ * pushed by the JVM's management beans rather than by polling, so the monitor
+ * costs nothing between events.
+ * <p>
+ * Once started, the monitor sets a usage threshold and a collection usage
+ * threshold on every heap pool that supports them (typically the old
+ * generation). Listeners receive a {@link HeapEvent} when a pool's usage
+ * exceeds its threshold, when its usage is still above the threshold after a
+ * garbage collection, and, if enabled, after every garbage collection.
+ * Thresholds are given in bytes, for instance with the constants in
+ * <code>PUnitUtils</code>.
+ * <p>
+ * Listeners are notified on the thread delivering the JVM's notifications and
+ * should return quickly. The thresholds of a memory pool are shared by the
+ * whole JVM, so irregular behavior can occur if multiple
+ * <code>HeapMonitor</code>s are started at once. The thresholds a pool had
+ * before the monitor was started are restored when it is ended.
+ *
+ * @author Jingchen Xu
+ */
+public class HeapMonitor implements NotificationListener {
+
+    /** The command of events sent when a pool exceeds its usage threshold. */
+    public static final String USAGE_THRESHOLD_EXCEEDED = "usage-threshold-exceeded";
+
+    /**
+     * The command of events sent when a pool is above its threshold after a
+     * garbage collection.
+     */
+    public static final String COLLECTION_THRESHOLD_EXCEEDED = "collection-threshold-exceeded";
+
+    /** The command of events sent after every garbage collection. */
+    public static final String COLLECTION = "collection";
+
+    private static final String GC_NOTIFICATION = "com.sun.management.gc.notification";
+
+    private final List<ActionListener> listeners = new ArrayList<ActionListener>();
+
+    // monitored pools -> their previous usage and collection thresholds
+    private final Map<MemoryPoolMXBean, long[]> pools = new LinkedHashMap<MemoryPoolMXBean, long[]>();
+
+    private final List<NotificationEmitter> emitters = new ArrayList<NotificationEmitter>();
+
+    private long threshold;
+
+    private volatile boolean reportCollections = false;
+
+    private boolean running = false;
+
+    /**
+     * Creates a new HeapMonitor which reports pools filled to more than 80% of
+     * their maximum size.
+     */
+    public HeapMonitor() {
+        this(-1);
+    }
+
+    /**
+     * Creates a new HeapMonitor.
+     *
+     * @param threshold the usage in bytes above which a pool is reported. If
+     *        negative, 80% of each pool's maximum size is used instead,
+     *        and pools without a maximum size are not monitored. Thresholds
+     *        above a pool's maximum size are lowered to it.
+     * @throws IllegalArgumentException if the threshold is zero, which would
+     *         disable threshold checking
+     */
+    public HeapMonitor(long threshold) {
+        this.threshold = checkThreshold(threshold);
+    }
+
+    /**
+     * Sets the usage in bytes above which a pool is reported. If the monitor
+     * is running, the new threshold takes effect immediately.
+     *
+     * @param threshold the threshold in bytes. If negative, 80% of each pool's
+     *        maximum size is used instead.
+     * @throws IllegalArgumentException if the threshold is zero, which would
+     *         disable threshold checking
+     */
+    public synchronized void setThreshold(long threshold) {
+        this.threshold = checkThreshold(threshold);
+        if (running)
+            applyThresholds();
+    }
+
+    /**
+     * Returns the usage in bytes above which a pool is reported.
+     *
+     * @return the threshold in bytes, or a negative number if 80% of each
+     *         pool's maximum size is used
+     */
+    public synchronized long getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Sets whether listeners are notified after every garbage collection in
+     * addition to when thresholds are exceeded. By default, they are not.
+     *
+     * @param reportCollections true to report every garbage collection
+     */
+    public void setReportCollections(boolean reportCollections) {
+        this.reportCollections = reportCollections;
+    }
+
+    /**
+     * Sets the pool thresholds and begins listening for notifications. Has no
+     * effect if the monitor is already running.
+     */
+    public synchronized void start() {
+
+        if (running)
+            return;
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP
+                    && pool.isUsageThresholdSupported()) {
+                long collectionThreshold = pool
+                        .isCollectionUsageThresholdSupported() ? pool
+                        .getCollectionUsageThreshold() : 0;
+                pools.put(pool, new long[] { pool.getUsageThreshold(),
+                        collectionThreshold });
+            }
+        }
+        applyThresholds();
+
+        addEmitter(ManagementFactory.getMemoryMXBean());
+        for (GarbageCollectorMXBean gc : ManagementFactory
+                .getGarbageCollectorMXBeans())
+            addEmitter(gc);
+
+        running = true;
+    }
+
+    /**
+     * Stops listening for notifications and restores the thresholds the pools
+     * had when the monitor was started.
+     */
+    public synchronized void end() {
+
+        if (!running)
+            return;
+
+        for (NotificationEmitter emitter : emitters) {
+            try {
+                emitter.removeNotificationListener(this);
+            }
+            catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        emitters.clear();
+
+        for (Map.Entry<MemoryPoolMXBean, long[]> entry : pools.entrySet()) {
+            MemoryPoolMXBean pool = entry.getKey();
+            pool.setUsageThreshold(entry.getValue()[0]);
+            if (pool.isCollectionUsageThresholdSupported())
+                pool.setCollectionUsageThreshold(entry.getValue()[1]);
+        }
+        pools.clear();
+
+        running = false;
+    }
+
+    /**
+     * Returns whether the monitor is listening for notifications.
+     *
+     * @return true if the monitor has been started and not ended
+     */
+    public synchronized boolean isRunning() {
+        return running;
+    }
+
+    private void addEmitter(Object bean) {
+        if (bean instanceof NotificationEmitter) {
+            NotificationEmitter emitter = (NotificationEmitter) bean;
+            emitter.addNotificationListener(this, null, null);
+            emitters.add(emitter);
+        }
+    }
+
+    private static long checkThreshold(long threshold) {
+        if (threshold == 0)
+            throw new IllegalArgumentException(
+                    "A threshold of zero disables threshold checking");
+        return threshold;
+    }
+
+    private void applyThresholds() {
+        for (MemoryPoolMXBean pool : pools.keySet()) {
+            long poolThreshold = threshold;
+            long max = pool.getUsage().getMax();
+            if (poolThreshold < 0) {
+                // without a maximum there is nothing to take 80% of
+                if (max <= 0)
+                    continue;
+                poolThreshold = (long) (max * 0.8);
+            }
+            else if (max > 0 && poolThreshold > max) {
+                poolThreshold = max;
+            }
+
+            pool.setUsageThreshold(poolThreshold);
+            if (pool.isCollectionUsageThresholdSupported())
+                pool.setCollectionUsageThreshold(poolThreshold);
+        }
+    }
+
+    @Override
+    public void handleNotification(Notification notification, Object handback) {
+
+        String type = notification.getType();
+
+        if (MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED.equals(type)
+                || MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED
+                        .equals(type)) {
+
+            MemoryNotificationInfo info = MemoryNotificationInfo
+                    .from((CompositeData) notification.getUserData());
+            String command = MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED
+                    .equals(type) ? USAGE_THRESHOLD_EXCEEDED
+                            : COLLECTION_THRESHOLD_EXCEEDED;
+
+            notifyListeners(new HeapEvent(this, command, info.getPoolName(),
+                    info.getUsage(), -1));
+        }
+        else if (GC_NOTIFICATION.equals(type) && reportCollections) {
+
+            // read through open data to avoid depending on com.sun classes
+            CompositeData data = (CompositeData) notification.getUserData();
+            String gcName = (String) data.get("gcName");
+            long duration = -1;
+            Object gcInfo = data.get("gcInfo");
+            if (gcInfo instanceof CompositeData)
+                duration = (Long) ((CompositeData) gcInfo).get("duration");
+
+            notifyListeners(new HeapEvent(this, COLLECTION, gcName,
+                    ManagementFactory.getMemoryMXBean().getHeapMemoryUsage(),
+                    duration));
+        }
+    }
+
+    /**
+     * Adds an <code>ActionListener</code> to the monitor.
+     *
+     * @param l the <code>ActionListener</code> to be added
+     */
+    public void addActionListener(ActionListener l) {
+        synchronized (listeners) {
+            listeners.add(l);
+        }
+    }
+
+    /**
+     * Removes an <code>ActionListener</code> from the monitor.
+     *
+     * @param l the <code>ActionListener</code> to be removed
+     */
+    public void removeActionListener(ActionListener l) {
+        synchronized (listeners) {
+            listeners.remove(l);
+        }
+    }
+
+    private void notifyListeners(HeapEvent e) {
+
+        synchronized (listeners) {
+            for (int i = 0; i < listeners.size(); i++)
+                listeners.get(i).actionPerformed(e);
+        }
+    }
+
+    /**
+     * An <code>ActionEvent</code> describing memory pressure. Its command is
+     * one of {@link HeapMonitor#USAGE_THRESHOLD_EXCEEDED},
+     * {@link HeapMonitor#COLLECTION_THRESHOLD_EXCEEDED} or
+     * {@link HeapMonitor#COLLECTION}.
+     */
+    public static class HeapEvent extends ActionEvent {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+
+        private final long used;
+
+        private final long committed;
+
+        private final long max;
+
+        private final long duration;
+
+        HeapEvent(Object source, String command, String name,
+                MemoryUsage usage, long duration) {
+            super(source, ACTION_PERFORMED, command);
+            this.name = name;
+            this.used = usage.getUsed();
+            this.committed = usage.getCommitted();
+            this.max = usage.getMax();
+            this.duration = duration;
+        }
+
+        /**
+         * Returns the name of the memory pool which exceeded its threshold,
+         * or of the garbage collector for collection events.
+         *
+         * @return the pool or collector name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the bytes used in the pool, or in the whole heap for
+         * collection events.
+         *
+         * @return the used bytes
+         */
+        public long getUsed() {
+            return used;
+        }
+
+        /**
+         * Returns the bytes committed to the pool, or to the whole heap for
+         * collection events.
+         *
+         * @return the committed bytes
+         */
+        public long getCommitted() {
+            return committed;
+        }
+
+        /**
+         * Returns the maximum size of the pool, or of the whole heap for
+         * collection events.
+         *
+         * @return the maximum size in bytes, or -1 if undefined
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Returns the duration of the garbage collection for collection
+         * events.
+         *
+         * @return the duration in milliseconds, or -1 if unknown
+         */
+        public long getDuration() {
+            return duration;
+        }
+    }
+}
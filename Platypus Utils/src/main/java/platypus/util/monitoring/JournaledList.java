@@ -0,0 +1,970 @@
+package platypus.util.monitoring;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.zip.CRC32;
+
+import platypus.util.general.PUnitUtils;
+
+/**
+ * A {@link ListenedList} whose contents survive restarts. Rather than
+ * rewriting the whole list on every change, each modification is appended to
+ * a compact binary journal, so the cost of persistence is proportional to
+ * the size of the change. When the journal grows past a threshold, the list
+ * is written to a snapshot and the journal is started afresh. Opening a
+ * <code>JournaledList</code> loads the snapshot and replays the journal.
+ * <p>
+ * The journal can be forced to disk after every modification, or records can
+ * be collected and written and forced together at a fixed interval, trading
+ * a bounded window of lost changes for far fewer disk syncs. Each record
+ * carries a checksum, so a record torn by a crash is detected and discarded
+ * on replay along with anything after it.
+ * <p>
+ * Modifications made through iterators, sub list views and the bulk methods
+ * <code>removeIf</code>, <code>replaceAll</code> and <code>sort</code> are
+ * recorded like any other. If the journal cannot be written, the failing
+ * modification throws an <code>IllegalStateException</code> without changing
+ * the list.
+ * <p>
+ * Like <code>ListenedList</code>, this list is not synchronized. If it is
+ * modified by multiple threads, they must synchronize externally, or the
+ * order of the journal may differ from the order the changes were applied.
+ * <p>
+ * A serialized <code>JournaledList</code> is deserialized as a plain
+ * <code>ArrayList</code> holding its elements, without a journal.
+ *
+ * @author Jingchen Xu
+ * @param <E> The type of elements in this list
+ */
+public class JournaledList<E> extends ListenedList<E> implements Closeable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Converts elements to and from the bytes stored in the journal.
+     *
+     * @param <E> the type of elements converted
+     */
+    public interface Codec<E> {
+
+        /**
+         * Writes a non-null element.
+         *
+         * @param out the output to write to
+         * @param element the element to write
+         * @throws IOException if the element cannot be written
+         */
+        void write(DataOutput out, E element) throws IOException;
+
+        /**
+         * Reads an element written by {@link #write(DataOutput, Object)}.
+         *
+         * @param in the input to read from
+         * @return the element
+         * @throws IOException if the element cannot be read
+         */
+        E read(DataInput in) throws IOException;
+    }
+
+    /** A codec for strings, stored as UTF-8. */
+    public static final Codec<String> STRING_CODEC = new Codec<String>() {
+        private final Charset utf8 = Charset.forName("UTF-8");
+
+        @Override
+        public void write(DataOutput out, String element) throws IOException {
+            byte[] bytes = element.getBytes(utf8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        @Override
+        public String read(DataInput in) throws IOException {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return new String(bytes, utf8);
+        }
+    };
+
+    /** A codec for integers. */
+    public static final Codec<Integer> INTEGER_CODEC = new Codec<Integer>() {
+        @Override
+        public void write(DataOutput out, Integer element) throws IOException {
+            out.writeInt(element);
+        }
+
+        @Override
+        public Integer read(DataInput in) throws IOException {
+            return in.readInt();
+        }
+    };
+
+    /** A codec for longs. */
+    public static final Codec<Long> LONG_CODEC = new Codec<Long>() {
+        @Override
+        public void write(DataOutput out, Long element) throws IOException {
+            out.writeLong(element);
+        }
+
+        @Override
+        public Long read(DataInput in) throws IOException {
+            return in.readLong();
+        }
+    };
+
+    /** The default journal size above which the list is compacted. */
+    public static final long DEFAULT_COMPACT_THRESHOLD = 4 * PUnitUtils.BYTES_PER_MEBIBYTE;
+
+    private static final int MAGIC = 0x504A4C53;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 16;
+
+    // pending records are written early once they reach this size
+    private static final int MAX_PENDING = (int) (64 * PUnitUtils.BYTES_PER_KIBIBYTE);
+
+    private static final byte ADD = 1;
+
+    private static final byte ADD_ALL = 2;
+
+    private static final byte SET = 3;
+
+    private static final byte REMOVE = 4;
+
+    private static final byte REMOVE_RANGE = 5;
+
+    private static final byte REMOVE_INDICES = 6;
+
+    private static final byte CLEAR = 7;
+
+    private static final byte REPLACE = 8;
+
+    private final transient File snapshotFile;
+
+    private final transient File journalFile;
+
+    private final transient Codec<E> codec;
+
+    private final transient long syncIntervalMillis;
+
+    private final transient long compactThreshold;
+
+    private final transient Object journalLock = new Object();
+
+    // guarded by journalLock
+    private transient FileChannel journal;
+
+    // guarded by journalLock
+    private transient long generation;
+
+    // bytes written to the journal, guarded by journalLock
+    private transient long journalSize;
+
+    // records not yet written, guarded by journalLock
+    private transient ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+    // guarded by journalLock
+    private transient IOException failure = null;
+
+    // guarded by journalLock
+    private transient boolean closed = false;
+
+    // guarded by journalLock
+    private final transient CRC32 crc = new CRC32();
+
+    private transient ScheduledExecutorService syncer = null;
+
+    /**
+     * Opens a JournaledList which forces every modification to disk, loading
+     * its previous contents if its files exist.
+     *
+     * @param file the base name of the list's snapshot and journal files
+     * @param codec the codec for the list's elements
+     * @throws IOException if the files cannot be read or created
+     */
+    public JournaledList(File file, Codec<E> codec) throws IOException {
+        this(file, codec, 0, DEFAULT_COMPACT_THRESHOLD);
+    }
+
+    /**
+     * Opens a JournaledList, loading its previous contents if its files
+     * exist. The snapshot and journal are stored next to each other with the
+     * extensions <code>.snapshot</code> and <code>.journal</code>.
+     *
+     * @param file the base name of the list's snapshot and journal files
+     * @param codec the codec for the list's elements
+     * @param syncIntervalMillis the interval in milliseconds at which
+     *        modifications are written and forced to disk together, or 0 to
+     *        force every modification as it is made
+     * @param compactThreshold the journal size in bytes above which the list
+     *        is written to a new snapshot
+     * @throws IOException if the files cannot be read or created
+     */
+    public JournaledList(File file, Codec<E> codec, long syncIntervalMillis,
+            long compactThreshold) throws IOException {
+        super();
+
+        if (codec == null)
+            throw new NullPointerException();
+        if (syncIntervalMillis < 0)
+            throw new IllegalArgumentException(
+                    "Sync interval must not be negative");
+
+        this.snapshotFile = new File(file.getAbsolutePath() + ".snapshot");
+        this.journalFile = new File(file.getAbsolutePath() + ".journal");
+        this.codec = codec;
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.compactThreshold = compactThreshold;
+
+        synchronized (journalLock) {
+            generation = snapshotFile.exists() ? loadSnapshot() : 0;
+            replayJournal();
+        }
+
+        if (syncIntervalMillis > 0) {
+            syncer = Executors
+                    .newSingleThreadScheduledExecutor(new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread t = new Thread(r, "JournaledList "
+                                    + journalFile.getName());
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+            syncer.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (journalLock) {
+                        try {
+                            if (journal != null)
+                                writePending(true);
+                        }
+                        catch (IOException e) {
+                            failure = e;
+                        }
+                    }
+                }
+            }, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public boolean add(E e) {
+        Record record = new Record(ADD);
+        record.writeInt(size());
+        record.writeElement(e);
+        record.end();
+        super.add(e);
+        changed();
+        return true;
+    }
+
+    @Override
+    public void add(int index, E element) {
+        checkPosition(index);
+        Record record = new Record(ADD);
+        record.writeInt(index);
+        record.writeElement(element);
+        record.end();
+        super.add(index, element);
+        changed();
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        return addAll(size(), c);
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends E> c) {
+        checkPosition(index);
+        if (c.isEmpty())
+            return false;
+
+        // copied first so the recorded and applied elements match
+        ArrayList<E> copy = new ArrayList<E>(c);
+        Record record = new Record(ADD_ALL);
+        record.writeInt(index);
+        record.writeInt(copy.size());
+        for (E e : copy)
+            record.writeElement(e);
+        record.end();
+
+        super.addAll(index, copy);
+        changed();
+        return true;
+    }
+
+    @Override
+    public E set(int index, E element) {
+        checkIndex(index);
+        Record record = new Record(SET);
+        record.writeInt(index);
+        record.writeElement(element);
+        record.end();
+        E val = super.set(index, element);
+        changed();
+        return val;
+    }
+
+    @Override
+    public E remove(int index) {
+        checkIndex(index);
+        Record record = new Record(REMOVE);
+        record.writeInt(index);
+        record.end();
+        E val = super.remove(index);
+        changed();
+        return val;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        int index = indexOf(o);
+        if (index < 0)
+            return false;
+        remove(index);
+        return true;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        return removeMatching(c, true);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        return removeMatching(c, false);
+    }
+
+    @Override
+    public void clear() {
+        new Record(CLEAR).end();
+        super.clear();
+        changed();
+    }
+
+    /**
+     * Removes the elements matching a filter. The filter is evaluated once
+     * per element, before anything is removed.
+     *
+     * @param filter the filter selecting the elements to remove
+     * @return true if any elements were removed
+     */
+    public boolean removeIf(Predicate<? super E> filter) {
+
+        int[] indices = new int[size()];
+        int count = 0;
+        for (int i = 0; i < size(); i++) {
+            if (filter.test(get(i)))
+                indices[count++] = i;
+        }
+        if (count == 0)
+            return false;
+
+        recordIndices(indices, count);
+        for (int i = count - 1; i >= 0; i--)
+            super.remove(indices[i]);
+        changed();
+        return true;
+    }
+
+    /**
+     * Replaces each element with the result of applying an operator to it.
+     * The new contents are recorded as a whole.
+     *
+     * @param operator the operator to apply to each element
+     */
+    public void replaceAll(UnaryOperator<E> operator) {
+        ArrayList<E> replaced = new ArrayList<E>(size());
+        for (E e : this)
+            replaced.add(operator.apply(e));
+        replaceContents(replaced);
+    }
+
+    /**
+     * Sorts the list. The sorted contents are recorded as a whole.
+     *
+     * @param c the comparator, or null to use the natural ordering
+     */
+    public void sort(Comparator<? super E> c) {
+        ArrayList<E> sorted = new ArrayList<E>(this);
+        Collections.sort(sorted, c);
+        replaceContents(sorted);
+    }
+
+    /**
+     * Returns a view of a range of the list. Modifications made through the
+     * view are recorded like those made to the list itself.
+     */
+    @Override
+    public List<E> subList(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex)
+            throw new IndexOutOfBoundsException("Range: " + fromIndex + "-"
+                    + toIndex + ", Size: " + size());
+        return new SubList(fromIndex, toIndex - fromIndex);
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex)
+            throw new IndexOutOfBoundsException("Range: " + fromIndex + "-"
+                    + toIndex + ", Size: " + size());
+        if (fromIndex == toIndex)
+            return;
+        Record record = new Record(REMOVE_RANGE);
+        record.writeInt(fromIndex);
+        record.writeInt(toIndex);
+        record.end();
+        super.removeRange(fromIndex, toIndex);
+        changed();
+    }
+
+    /**
+     * Writes any modifications not yet written to the journal and forces
+     * them to disk.
+     *
+     * @throws IOException if the journal cannot be written
+     */
+    public void flush() throws IOException {
+        synchronized (journalLock) {
+            checkOpen();
+            writePending(true);
+        }
+    }
+
+    /**
+     * Writes the current contents of the list to a new snapshot and empties
+     * the journal. This happens automatically once the journal grows past
+     * the compaction threshold.
+     *
+     * @throws IOException if the snapshot or journal cannot be written
+     */
+    public void compact() throws IOException {
+        synchronized (journalLock) {
+            checkOpen();
+            writePending(false);
+
+            // the new snapshot supersedes the journal as soon as it is moved
+            // into place, so a crash before the journal is reset is harmless
+            File temp = new File(snapshotFile.getAbsolutePath() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp
+                            .toPath())))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(generation + 1);
+                out.writeInt(size());
+                for (E e : this)
+                    writeElement(out, e);
+            }
+            try (FileChannel channel = FileChannel.open(temp.toPath(),
+                    StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temp.toPath(), snapshotFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+
+            generation++;
+            journal.close();
+            journal = null;
+            openJournal(true);
+        }
+    }
+
+    /**
+     * Writes any outstanding modifications and closes the journal. The list
+     * can still be read and modified afterwards, but modifications are no
+     * longer recorded.
+     *
+     * @throws IOException if the journal cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (syncer != null)
+            syncer.shutdown();
+
+        synchronized (journalLock) {
+            if (closed)
+                return;
+            closed = true;
+            if (journal == null)
+                return;
+            try {
+                writePending(true);
+            }
+            finally {
+                journal.close();
+                journal = null;
+            }
+        }
+    }
+
+    /**
+     * Returns the current size of the journal, including modifications not
+     * yet written.
+     *
+     * @return the journal size in bytes
+     */
+    public long getJournalSize() {
+        synchronized (journalLock) {
+            return journalSize + pending.size();
+        }
+    }
+
+    private boolean removeMatching(Collection<?> c, boolean remove) {
+
+        int[] indices = new int[size()];
+        int count = 0;
+        for (int i = 0; i < size(); i++) {
+            if (c.contains(get(i)) == remove)
+                indices[count++] = i;
+        }
+        if (count == 0)
+            return false;
+
+        recordIndices(indices, count);
+        if (remove)
+            super.removeAll(c);
+        else
+            super.retainAll(c);
+        changed();
+        return true;
+    }
+
+    private void recordIndices(int[] indices, int count) {
+        Record record = new Record(REMOVE_INDICES);
+        record.writeInt(count);
+        for (int i = 0; i < count; i++)
+            record.writeInt(indices[i]);
+        record.end();
+    }
+
+    /**
+     * Replaces the contents of the list with a single record, so a crash
+     * cannot leave only part of the change in the journal.
+     */
+    private void replaceContents(ArrayList<E> elements) {
+        if (elements.isEmpty())
+            return;
+
+        Record record = new Record(REPLACE);
+        record.writeInt(elements.size());
+        for (E e : elements)
+            record.writeElement(e);
+        record.end();
+
+        super.clear();
+        super.addAll(elements);
+        changed();
+    }
+
+    private void writeElement(DataOutputStream out, E element)
+            throws IOException {
+        out.writeBoolean(element != null);
+        if (element != null)
+            codec.write(out, element);
+    }
+
+    /**
+     * Compacts the list once a recorded modification has been applied, if
+     * the journal has grown past the threshold.
+     */
+    private void changed() {
+        synchronized (journalLock) {
+            if (journal == null
+                    || journalSize + pending.size() <= compactThreshold)
+                return;
+            try {
+                compact();
+            }
+            catch (IOException e) {
+                // the modification itself is already recorded
+                failure = e;
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void writePending(boolean force) throws IOException {
+        if (pending.size() > 0) {
+            ByteBuffer buf = ByteBuffer.wrap(pending.toByteArray());
+            while (buf.hasRemaining())
+                journal.write(buf);
+            journalSize += buf.limit();
+            pending.reset();
+        }
+        if (force)
+            journal.force(false);
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed)
+            throw new IOException("Journal is closed");
+        if (failure != null)
+            throw new IOException("Journal previously failed", failure);
+        if (journal == null)
+            throw new IOException("Journal is not open");
+    }
+
+    private long loadSnapshot() throws IOException {
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(snapshotFile.toPath())))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                throw new IOException("Not a list snapshot: " + snapshotFile);
+
+            long snapshotGeneration = in.readLong();
+            int count = in.readInt();
+            ArrayList<E> elements = new ArrayList<E>(count);
+            for (int i = 0; i < count; i++)
+                elements.add(readElement(in));
+            super.addAll(elements);
+            return snapshotGeneration;
+        }
+    }
+
+    /**
+     * Applies the journal written since the snapshot, discarding it if it
+     * belongs to an older snapshot and truncating any torn record at its end.
+     */
+    private void replayJournal() throws IOException {
+
+        if (!journalFile.exists()) {
+            openJournal(true);
+            return;
+        }
+
+        long valid = 0;
+        boolean current = false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(journalFile.toPath())))) {
+
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                throw new IOException("Not a list journal: " + journalFile);
+            current = in.readLong() == generation;
+            valid = HEADER_SIZE;
+
+            while (current) {
+                byte[] bytes;
+                try {
+                    int length = in.readInt();
+                    int checksum = in.readInt();
+                    if (length <= 0 || length > journalFile.length())
+                        break;
+                    bytes = new byte[length];
+                    in.readFully(bytes);
+                    crc.reset();
+                    crc.update(bytes, 0, length);
+                    if ((int) crc.getValue() != checksum)
+                        break;
+                }
+                catch (EOFException e) {
+                    break;
+                }
+
+                apply(new DataInputStream(new ByteArrayInputStream(bytes)));
+                valid += 8 + bytes.length;
+            }
+        }
+        catch (EOFException e) {
+            // torn header; the journal never held a record
+        }
+
+        if (!current) {
+            openJournal(true);
+            return;
+        }
+
+        openJournal(false);
+        if (journal.size() > valid)
+            journal.truncate(valid);
+        journal.position(valid);
+        journalSize = valid;
+    }
+
+    private void apply(DataInputStream in) throws IOException {
+
+        byte op = in.readByte();
+        switch (op) {
+        case ADD:
+            super.add(in.readInt(), readElement(in));
+            break;
+        case ADD_ALL:
+            int index = in.readInt();
+            int count = in.readInt();
+            ArrayList<E> elements = new ArrayList<E>(count);
+            for (int i = 0; i < count; i++)
+                elements.add(readElement(in));
+            super.addAll(index, elements);
+            break;
+        case SET:
+            super.set(in.readInt(), readElement(in));
+            break;
+        case REMOVE:
+            super.remove(in.readInt());
+            break;
+        case REMOVE_RANGE:
+            super.removeRange(in.readInt(), in.readInt());
+            break;
+        case REMOVE_INDICES:
+            int[] indices = new int[in.readInt()];
+            for (int i = 0; i < indices.length; i++)
+                indices[i] = in.readInt();
+            for (int i = indices.length - 1; i >= 0; i--)
+                super.remove(indices[i]);
+            break;
+        case CLEAR:
+            super.clear();
+            break;
+        case REPLACE:
+            int size = in.readInt();
+            ArrayList<E> contents = new ArrayList<E>(size);
+            for (int i = 0; i < size; i++)
+                contents.add(readElement(in));
+            super.clear();
+            super.addAll(contents);
+            break;
+        default:
+            throw new IOException("Unknown journal record " + op + " in "
+                    + journalFile);
+        }
+    }
+
+    private E readElement(DataInput in) throws IOException {
+        return in.readBoolean() ? codec.read(in) : null;
+    }
+
+    private void openJournal(boolean reset) throws IOException {
+
+        if (reset) {
+            File temp = new File(journalFile.getAbsolutePath() + ".tmp");
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(generation).flip();
+            try (FileChannel channel = FileChannel.open(temp.toPath(),
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE)) {
+                while (header.hasRemaining())
+                    channel.write(header);
+                channel.force(true);
+            }
+            Files.move(temp.toPath(), journalFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            journalSize = HEADER_SIZE;
+        }
+
+        journal = FileChannel.open(journalFile.toPath(),
+                StandardOpenOption.WRITE);
+        journal.position(journal.size());
+    }
+
+    /**
+     * Serializes this list as a plain <code>ArrayList</code> of its current
+     * elements, since its journal cannot travel with it.
+     */
+    private Object writeReplace() throws ObjectStreamException {
+        return new ArrayList<E>(this);
+    }
+
+    /**
+     * A journal record being encoded. Each modification encodes its record
+     * in its own buffer, and only appending it to the pending records is
+     * done under the journal lock, which is shared with the sync thread.
+     */
+    private final class Record {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        Record(byte op) {
+            bytes.write(op);
+        }
+
+        void writeInt(int value) {
+            try {
+                out.writeInt(value);
+            }
+            catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void writeElement(E element) {
+            try {
+                JournaledList.this.writeElement(out, element);
+            }
+            catch (IOException e) {
+                throw new IllegalArgumentException("Cannot encode " + element,
+                        e);
+            }
+        }
+
+        /**
+         * Appends the record to the pending records, and writes them if
+         * required. Once the list is closed, records are discarded.
+         */
+        void end() {
+
+            byte[] record = bytes.toByteArray();
+            synchronized (journalLock) {
+                if (closed)
+                    return;
+                try {
+                    checkOpen();
+                    crc.reset();
+                    crc.update(record, 0, record.length);
+                    DataOutputStream pendingOut = new DataOutputStream(pending);
+                    pendingOut.writeInt(record.length);
+                    pendingOut.writeInt((int) crc.getValue());
+                    pendingOut.write(record);
+
+                    if (syncIntervalMillis == 0)
+                        writePending(true);
+                    else if (pending.size() >= MAX_PENDING)
+                        writePending(false);
+                }
+                catch (IOException e) {
+                    failure = e;
+                    throw new IllegalStateException("Cannot write journal "
+                            + journalFile, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * A view of a range of the list which applies its modifications through
+     * the methods of the list, so they are recorded.
+     */
+    private final class SubList extends AbstractList<E> implements
+            RandomAccess {
+
+        private final int offset;
+
+        private int size;
+
+        private int expectedModCount = JournaledList.this.modCount;
+
+        SubList(int offset, int size) {
+            this.offset = offset;
+            this.size = size;
+        }
+
+        @Override
+        public E get(int index) {
+            checkRange(index, size - 1);
+            return JournaledList.this.get(offset + index);
+        }
+
+        @Override
+        public E set(int index, E element) {
+            checkRange(index, size - 1);
+            return JournaledList.this.set(offset + index, element);
+        }
+
+        @Override
+        public int size() {
+            checkForComodification();
+            return size;
+        }
+
+        @Override
+        public void add(int index, E element) {
+            checkRange(index, size);
+            JournaledList.this.add(offset + index, element);
+            resized(1);
+        }
+
+        @Override
+        public E remove(int index) {
+            checkRange(index, size - 1);
+            E val = JournaledList.this.remove(offset + index);
+            resized(-1);
+            return val;
+        }
+
+        @Override
+        public boolean addAll(int index, Collection<? extends E> c) {
+            checkRange(index, size);
+            int added = c.size();
+            if (!JournaledList.this.addAll(offset + index, c))
+                return false;
+            resized(added);
+            return true;
+        }
+
+        @Override
+        protected void removeRange(int fromIndex, int toIndex) {
+            checkForComodification();
+            JournaledList.this.removeRange(offset + fromIndex, offset
+                    + toIndex);
+            resized(fromIndex - toIndex);
+        }
+
+        private void resized(int delta) {
+            size += delta;
+            expectedModCount = JournaledList.this.modCount;
+            modCount++;
+        }
+
+        private void checkRange(int index, int max) {
+            checkForComodification();
+            if (index < 0 || index > max)
+                throw new IndexOutOfBoundsException("Index: " + index
+                        + ", Size: " + size);
+        }
+
+        private void checkForComodification() {
+            if (JournaledList.this.modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException("Index: " + index
+                    + ", Size: " + size());
+    }
+
+    private void checkPosition(int index) {
+        if (index < 0 || index > size())
+            throw new IndexOutOfBoundsException("Index: " + index
+                    + ", Size: " + size());
+    }
+}
@@ -69,6 +69,34 @@ public class ListenedList<E> extends ArrayList<E> {
         listeners.remove(listener);
     }
 
+    /**
+     * Creates a publisher of this list's events for subscribers which cannot
+     * keep up with its rate of modification. The publisher is detached from
+     * this list when it is closed. Since events are delivered
+     * asynchronously, subscribers should not assume the list is unchanged
+     * since the event was generated.
+     *
+     * @param bufferSize
+     *        the number of events buffered for each subscriber
+     * @param strategy
+     *        what to do when a subscriber's buffer is full
+     * @return the publisher
+     */
+    public ActionEventPublisher publish(int bufferSize,
+            BufferedPublisher.OverflowStrategy strategy) {
+
+        ActionEventPublisher publisher = new ActionEventPublisher(bufferSize,
+                strategy) {
+            @Override
+            public void close() {
+                removeActionListener(this);
+                super.close();
+            }
+        };
+        addActionListener(publisher);
+        return publisher;
+    }
+
     private void notifyListeners() {
 
         synchronized (listeners) {
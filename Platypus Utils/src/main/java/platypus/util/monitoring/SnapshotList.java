@@ -0,0 +1,263 @@
+package platypus.util.monitoring;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.ListIterator;
+import java.util.RandomAccess;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import platypus.util.general.PersistentVector;
+
+/**
+ * A list which, like {@link ListenedList}, generates an
+ * <code>ActionEvent</code> every time it is modified, and which gives
+ * listeners and readers immutable snapshots of its contents at no cost.
+ * <p>
+ * The contents are held in a {@link PersistentVector}, and every
+ * modification replaces it with a new version sharing structure with the
+ * old one. Each event is a {@link SnapshotEvent} carrying the versions before
+ * and after the modification, which stay valid however the list changes
+ * afterwards. Readers can likewise take a {@link #snapshot()} at any time
+ * and iterate it without locking or copying.
+ * <p>
+ * Modifications are synchronized and notify listeners on the modifying
+ * thread; reads of the list itself are not synchronized and see the latest
+ * version. Iterators traverse the version current when they are created, so
+ * they never fail or mix versions during concurrent modification, but they
+ * do not support modifying the list. Bulk operations generate a single
+ * event.
+ *
+ * @author Jingchen Xu
+ * @param <E> The type of elements in this list
+ */
+public class SnapshotList<E> extends AbstractList<E> implements RandomAccess {
+
+    private final CopyOnWriteArrayList<ActionListener> listeners = new CopyOnWriteArrayList<ActionListener>();
+
+    private String command = "";
+
+    private volatile PersistentVector<E> current;
+
+    /**
+     * Constructs an empty SnapshotList.
+     */
+    public SnapshotList() {
+        current = PersistentVector.empty();
+    }
+
+    /**
+     * Constructs a SnapshotList containing the elements of the specified
+     * collection, in the order they are returned by the collection's iterator.
+     *
+     * @param c the collection whose elements are to be placed into this list
+     */
+    public SnapshotList(Collection<? extends E> c) {
+        current = PersistentVector.copyOf(c);
+    }
+
+    /**
+     * Returns an immutable snapshot of the current contents of this list.
+     *
+     * @return the current version of the list
+     */
+    public PersistentVector<E> snapshot() {
+        return current;
+    }
+
+    /**
+     * Sets the action command for this list.
+     *
+     * @param command the action command for this list
+     */
+    public void setActionCommand(String command) {
+        this.command = command;
+    }
+
+    /**
+     * Adds an <code>ActionListener</code> to this list.
+     *
+     * @param listener the <code>ActionListener</code> to add to this list
+     */
+    public void addActionListener(ActionListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes an <code>ActionListener</code> from this list.
+     *
+     * @param listener the <code>ActionListener</code> to remove from this list
+     */
+    public void removeActionListener(ActionListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public E get(int index) {
+        return current.get(index);
+    }
+
+    @Override
+    public int size() {
+        return current.size();
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return current.iterator();
+    }
+
+    @Override
+    public ListIterator<E> listIterator() {
+        return current.listIterator();
+    }
+
+    @Override
+    public ListIterator<E> listIterator(int index) {
+        return current.listIterator(index);
+    }
+
+    @Override
+    public synchronized boolean add(E e) {
+        update(current.plus(e));
+        return true;
+    }
+
+    @Override
+    public synchronized void add(int index, E element) {
+        update(current.plus(index, element));
+    }
+
+    @Override
+    public synchronized boolean addAll(Collection<? extends E> c) {
+        if (c.isEmpty())
+            return false;
+        update(current.plusAll(c));
+        return true;
+    }
+
+    @Override
+    public synchronized boolean addAll(int index, Collection<? extends E> c) {
+        PersistentVector<E> next = current.plusAll(index, c);
+        if (c.isEmpty())
+            return false;
+        update(next);
+        return true;
+    }
+
+    @Override
+    public synchronized E set(int index, E element) {
+        E val = current.get(index);
+        update(current.with(index, element));
+        return val;
+    }
+
+    @Override
+    public synchronized E remove(int index) {
+        E val = current.get(index);
+        update(current.minus(index));
+        return val;
+    }
+
+    @Override
+    public synchronized boolean remove(Object o) {
+        int index = current.indexOf(o);
+        if (index < 0)
+            return false;
+        update(current.minus(index));
+        return true;
+    }
+
+    @Override
+    public synchronized boolean removeAll(Collection<?> c) {
+        return filter(c, false);
+    }
+
+    @Override
+    public synchronized boolean retainAll(Collection<?> c) {
+        return filter(c, true);
+    }
+
+    @Override
+    public synchronized void clear() {
+        update(PersistentVector.<E> empty());
+    }
+
+    @Override
+    protected synchronized void removeRange(int fromIndex, int toIndex) {
+        update(current.minus(fromIndex, toIndex));
+    }
+
+    private boolean filter(Collection<?> c, boolean retain) {
+        ArrayList<E> kept = new ArrayList<E>(current.size());
+        for (E e : current) {
+            if (c.contains(e) == retain)
+                kept.add(e);
+        }
+        if (kept.size() == current.size())
+            return false;
+        update(PersistentVector.copyOf(kept));
+        return true;
+    }
+
+    private void update(PersistentVector<E> next) {
+        PersistentVector<E> previous = current;
+        current = next;
+        modCount++;
+        notifyListeners(previous, next);
+    }
+
+    private void notifyListeners(PersistentVector<E> previous,
+            PersistentVector<E> next) {
+
+        if (listeners.isEmpty())
+            return;
+
+        SnapshotEvent<E> e = new SnapshotEvent<E>(this, command, previous, next);
+        for (ActionListener l : listeners)
+            l.actionPerformed(e);
+    }
+
+    /**
+     * An <code>ActionEvent</code> carrying the versions of a
+     * <code>SnapshotList</code> before and after a modification.
+     *
+     * @param <E> The type of elements in the list
+     */
+    public static class SnapshotEvent<E> extends ActionEvent {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient PersistentVector<E> previous;
+
+        private final transient PersistentVector<E> snapshot;
+
+        SnapshotEvent(Object source, String command,
+                PersistentVector<E> previous, PersistentVector<E> snapshot) {
+            super(source, ACTION_PERFORMED, command);
+            this.previous = previous;
+            this.snapshot = snapshot;
+        }
+
+        /**
+         * Returns the contents of the list before the modification.
+         *
+         * @return the previous version of the list
+         */
+        public PersistentVector<E> getPrevious() {
+            return previous;
+        }
+
+        /**
+         * Returns the contents of the list after the modification.
+         *
+         * @return the new version of the list
+         */
+        public PersistentVector<E> getSnapshot() {
+            return snapshot;
+        }
+    }
+}
@@ -0,0 +1,652 @@
+package platypus.util.monitoring;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A list which keeps its elements sorted and, like {@link ListenedList},
+ * generates an <code>ActionEvent</code> every time it is modified. Each
+ * event is a {@link SortedEvent} reporting the element inserted or removed
+ * and its index, so listeners can maintain views of the list without
+ * re-sorting or searching it.
+ * <p>
+ * The elements are held in a balanced binary tree in which every node counts
+ * the elements below it. Insertion, removal, indexed access and the rank and
+ * range queries all take logarithmic time. Equal elements are kept in the
+ * order they were added.
+ * <p>
+ * Elements are added with {@link #add(Object)}; the positional
+ * <code>add</code> and <code>set</code> methods throw
+ * <code>UnsupportedOperationException</code>, since they could break the
+ * ordering. Like <code>ListenedList</code>, this list is not synchronized.
+ *
+ * @author Jingchen Xu
+ * @param <E> The type of elements in this list
+ */
+public class SortedList<E> extends AbstractList<E> {
+
+    /**
+     * The kinds of change reported by a {@link SortedEvent}.
+     */
+    public enum Change {
+
+        /** An element was inserted at the reported index. */
+        INSERTED,
+
+        /** The element at the reported index was removed. */
+        REMOVED,
+
+        /** All elements were removed. */
+        CLEARED
+    }
+
+    private static final class Node<E> {
+
+        E value;
+
+        Node<E> left, right;
+
+        int height = 1;
+
+        int size = 1;
+
+        Node(E value) {
+            this.value = value;
+        }
+    }
+
+    private final Comparator<? super E> comparator;
+
+    private Node<E> root = null;
+
+    private ArrayList<ActionListener> listeners = new ArrayList<ActionListener>();
+
+    private String command = new String();
+
+    // set by removeAt
+    private E removed;
+
+    /**
+     * Constructs an empty SortedList ordered by the elements' natural
+     * ordering.
+     */
+    public SortedList() {
+        this((Comparator<? super E>) null);
+    }
+
+    /**
+     * Constructs an empty SortedList.
+     *
+     * @param comparator the comparator ordering the list, or null to use the
+     *        elements' natural ordering
+     */
+    public SortedList(Comparator<? super E> comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * Constructs a SortedList containing the elements of the specified
+     * collection.
+     *
+     * @param c the collection whose elements are to be placed into this list
+     * @param comparator the comparator ordering the list, or null to use the
+     *        elements' natural ordering
+     */
+    public SortedList(Collection<? extends E> c,
+            Comparator<? super E> comparator) {
+        this(comparator);
+        for (E e : c)
+            root = insert(root, e);
+    }
+
+    /**
+     * Returns the comparator ordering this list.
+     *
+     * @return the comparator, or null if the natural ordering is used
+     */
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    /**
+     * Sets the action command for this list.
+     *
+     * @param command the action command for this list
+     */
+    public void setActionCommand(String command) {
+        this.command = command;
+    }
+
+    /**
+     * Adds an <code>ActionListener</code> to this list.
+     *
+     * @param listener the <code>ActionListener</code> to add to this list
+     */
+    public void addActionListener(ActionListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes an <code>ActionListener</code> from this list.
+     *
+     * @param listener the <code>ActionListener</code> to remove from this list
+     */
+    public void removeActionListener(ActionListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    @Override
+    public E get(int index) {
+        checkIndex(index);
+        Node<E> node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            }
+            else if (index > leftSize) {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+            else {
+                return node.value;
+            }
+        }
+    }
+
+    /**
+     * Inserts an element at its sorted position, after any equal elements.
+     *
+     * @param e the element to insert
+     * @return true
+     */
+    @Override
+    public boolean add(E e) {
+        int index = upperBound(e);
+        root = insert(root, e);
+        modCount++;
+        notifyListeners(Change.INSERTED, index, e);
+        return true;
+    }
+
+    /**
+     * Inserts the elements of a collection at their sorted positions. One
+     * event is generated for each element.
+     *
+     * @param c the collection whose elements are to be inserted
+     * @return true if this list changed
+     */
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        for (E e : c)
+            add(e);
+        return !c.isEmpty();
+    }
+
+    @Override
+    public E remove(int index) {
+        checkIndex(index);
+        root = removeAt(root, index);
+        modCount++;
+        E val = removed;
+        removed = null;
+        notifyListeners(Change.REMOVED, index, val);
+        return val;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        int index = indexOf(o);
+        if (index < 0)
+            return false;
+        remove(index);
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        modCount++;
+        notifyListeners(Change.CLEARED, -1, null);
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        for (int i = toIndex - 1; i >= fromIndex; i--)
+            remove(i);
+    }
+
+    /**
+     * Returns the index of the first occurrence of an element, found by
+     * binary search.
+     *
+     * @param o the element to search for
+     * @return the index of the element, or -1 if it is not in this list
+     */
+    @Override
+    public int indexOf(Object o) {
+        if (o == null && comparator == null)
+            return -1;
+        E e = castOrNull(o);
+        if (e == null && o != null)
+            return -1;
+
+        int start = lowerBound(e);
+        Iterator<E> it = iterator(start);
+        for (int i = start; it.hasNext(); i++) {
+            E next = it.next();
+            if (compare(next, e) != 0)
+                break;
+            if (o == null ? next == null : o.equals(next))
+                return i;
+        }
+        return -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        int index = indexOf(o);
+        if (index < 0)
+            return -1;
+
+        // equal elements may be interleaved with others comparing equal
+        E e = get(index);
+        Iterator<E> it = iterator(index + 1);
+        for (int i = index + 1; it.hasNext(); i++) {
+            E next = it.next();
+            if (compare(next, e) != 0)
+                break;
+            if (o == null ? next == null : o.equals(next))
+                index = i;
+        }
+        return index;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    /**
+     * Returns the number of elements less than an element, which is the
+     * index of the first element not less than it.
+     *
+     * @param e the element to rank
+     * @return the index of the first element not less than the element
+     */
+    public int lowerBound(E e) {
+        int index = 0;
+        Node<E> node = root;
+        while (node != null) {
+            if (compare(node.value, e) < 0) {
+                index += size(node.left) + 1;
+                node = node.right;
+            }
+            else {
+                node = node.left;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns the number of elements less than or equal to an element, which
+     * is the index of the first element greater than it.
+     *
+     * @param e the element to rank
+     * @return the index of the first element greater than the element
+     */
+    public int upperBound(E e) {
+        int index = 0;
+        Node<E> node = root;
+        while (node != null) {
+            if (compare(node.value, e) <= 0) {
+                index += size(node.left) + 1;
+                node = node.right;
+            }
+            else {
+                node = node.left;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns the number of elements in a range.
+     *
+     * @param from the lower bound of the range, inclusive
+     * @param to the upper bound of the range, exclusive
+     * @return the number of elements not less than <code>from</code> and
+     *         less than <code>to</code>
+     */
+    public int countRange(E from, E to) {
+        return Math.max(0, lowerBound(to) - lowerBound(from));
+    }
+
+    /**
+     * Returns the elements in a range, in order.
+     *
+     * @param from the lower bound of the range, inclusive
+     * @param to the upper bound of the range, exclusive
+     * @return a new list of the elements not less than <code>from</code> and
+     *         less than <code>to</code>
+     */
+    public List<E> range(E from, E to) {
+        int start = lowerBound(from);
+        int count = lowerBound(to) - start;
+        List<E> output = new ArrayList<E>(Math.max(0, count));
+        Iterator<E> it = iterator(start);
+        for (int i = 0; i < count; i++)
+            output.add(it.next());
+        return output;
+    }
+
+    /**
+     * Returns the smallest element.
+     *
+     * @return the first element
+     * @throws NoSuchElementException if this list is empty
+     */
+    public E first() {
+        if (root == null)
+            throw new NoSuchElementException();
+        Node<E> node = root;
+        while (node.left != null)
+            node = node.left;
+        return node.value;
+    }
+
+    /**
+     * Returns the largest element.
+     *
+     * @return the last element
+     * @throws NoSuchElementException if this list is empty
+     */
+    public E last() {
+        if (root == null)
+            throw new NoSuchElementException();
+        Node<E> node = root;
+        while (node.right != null)
+            node = node.right;
+        return node.value;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return iterator(0);
+    }
+
+    /**
+     * Returns an in-order iterator starting at an index, which walks the
+     * tree instead of looking up each index.
+     */
+    private Iterator<E> iterator(final int start) {
+        return new Iterator<E>() {
+
+            private final ArrayDeque<Node<E>> path = new ArrayDeque<Node<E>>();
+
+            private int index = start;
+
+            private int last = -1;
+
+            private int expectedModCount = modCount;
+
+            {
+                seek(start);
+            }
+
+            @Override
+            public boolean hasNext() {
+                return index < size();
+            }
+
+            @Override
+            public E next() {
+                if (modCount != expectedModCount)
+                    throw new ConcurrentModificationException();
+                if (path.isEmpty())
+                    throw new NoSuchElementException();
+
+                Node<E> node = path.pop();
+                for (Node<E> n = node.right; n != null; n = n.left)
+                    path.push(n);
+                last = index++;
+                return node.value;
+            }
+
+            @Override
+            public void remove() {
+                if (last < 0)
+                    throw new IllegalStateException();
+                if (modCount != expectedModCount)
+                    throw new ConcurrentModificationException();
+
+                SortedList.this.remove(last);
+                index = last;
+                last = -1;
+                expectedModCount = modCount;
+                seek(index);
+            }
+
+            // pushes the ancestors of the node at an index which precede it
+            private void seek(int i) {
+                path.clear();
+                Node<E> node = root;
+                while (node != null) {
+                    int leftSize = size(node.left);
+                    if (i <= leftSize) {
+                        path.push(node);
+                        if (i == leftSize)
+                            break;
+                        node = node.left;
+                    }
+                    else {
+                        i -= leftSize + 1;
+                        node = node.right;
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Always throws <code>UnsupportedOperationException</code>, since the
+     * position of an element is determined by its order.
+     */
+    @Override
+    public void add(int index, E element) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Always throws <code>UnsupportedOperationException</code>, since the
+     * position of an element is determined by its order.
+     */
+    @Override
+    public E set(int index, E element) {
+        throw new UnsupportedOperationException();
+    }
+
+    private void notifyListeners(Change change, int index, E element) {
+
+        synchronized (listeners) {
+            for (ActionListener l : listeners)
+                l.actionPerformed(new SortedEvent<E>(this, command, change,
+                        index, element));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(E a, E b) {
+        if (comparator != null)
+            return comparator.compare(a, b);
+        return ((Comparable<? super E>) a).compareTo(b);
+    }
+
+    @SuppressWarnings("unchecked")
+    private E castOrNull(Object o) {
+        try {
+            E e = (E) o;
+            if (root != null)
+                compare(root.value, e);
+            return e;
+        }
+        catch (ClassCastException ex) {
+            return null;
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException("Index: " + index
+                    + ", Size: " + size());
+    }
+
+    private Node<E> insert(Node<E> node, E e) {
+        if (node == null)
+            return new Node<E>(e);
+        if (compare(e, node.value) < 0)
+            node.left = insert(node.left, e);
+        else
+            node.right = insert(node.right, e);
+        return balance(node);
+    }
+
+    private Node<E> removeAt(Node<E> node, int index) {
+        int leftSize = size(node.left);
+        if (index < leftSize) {
+            node.left = removeAt(node.left, index);
+        }
+        else if (index > leftSize) {
+            node.right = removeAt(node.right, index - leftSize - 1);
+        }
+        else {
+            removed = node.value;
+            if (node.left == null)
+                return node.right;
+            if (node.right == null)
+                return node.left;
+
+            // replace with the successor
+            Node<E> successor = node.right;
+            while (successor.left != null)
+                successor = successor.left;
+            E value = removed;
+            node.right = removeAt(node.right, 0);
+            node.value = successor.value;
+            removed = value;
+        }
+        return balance(node);
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static int height(Node<?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static <E> Node<E> update(Node<E> node) {
+        node.height = Math.max(height(node.left), height(node.right)) + 1;
+        node.size = size(node.left) + size(node.right) + 1;
+        return node;
+    }
+
+    private static <E> Node<E> balance(Node<E> node) {
+        update(node);
+        int factor = height(node.left) - height(node.right);
+        if (factor > 1) {
+            if (height(node.left.left) < height(node.left.right))
+                node.left = rotateLeft(node.left);
+            return rotateRight(node);
+        }
+        if (factor < -1) {
+            if (height(node.right.right) < height(node.right.left))
+                node.right = rotateRight(node.right);
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private static <E> Node<E> rotateLeft(Node<E> node) {
+        Node<E> pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = update(node);
+        return update(pivot);
+    }
+
+    private static <E> Node<E> rotateRight(Node<E> node) {
+        Node<E> pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = update(node);
+        return update(pivot);
+    }
+
+    /**
+     * An <code>ActionEvent</code> reporting a change to a
+     * <code>SortedList</code> and the index at which it happened.
+     *
+     * @param <E> The type of elements in the list
+     */
+    public static class SortedEvent<E> extends ActionEvent {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Change change;
+
+        private final int index;
+
+        private final transient E element;
+
+        SortedEvent(Object source, String command, Change change, int index,
+                E element) {
+            super(source, ACTION_PERFORMED, command);
+            this.change = change;
+            this.index = index;
+            this.element = element;
+        }
+
+        /**
+         * Returns the kind of change.
+         *
+         * @return the change
+         */
+        public Change getChange() {
+            return change;
+        }
+
+        /**
+         * Returns the index at which the element was inserted or from which
+         * it was removed.
+         *
+         * @return the index, or -1 if the list was cleared
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Returns the element inserted or removed.
+         *
+         * @return the element, or null if the list was cleared
+         */
+        public E getElement() {
+            return element;
+        }
+    }
+}
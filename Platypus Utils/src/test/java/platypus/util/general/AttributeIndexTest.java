@@ -0,0 +1,169 @@
+package platypus.util.general;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test class for AttributeIndex.
+ *
+ * @author Jingchen Xu
+ */
+public class AttributeIndexTest {
+
+    /**
+     * Temporary folder for the indexed tree and the index file
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File root;
+
+    private File a, b, c;
+
+    /**
+     * Creates a tree of tagged files.
+     *
+     * @throws IOException if the test files cannot be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        root = folder.newFolder("root");
+        Assume.assumeTrue(Files.getFileStore(root.toPath())
+                .supportsFileAttributeView(UserDefinedFileAttributeView.class));
+
+        a = create("a.txt");
+        b = create("sub/b.txt");
+        c = create("sub/deeper/c.txt");
+        PFileUtils.setUserDefinedFileAttribute(a, "project", "platypus");
+        PFileUtils.setUserDefinedFileAttribute(b, "project", "platypus-utils");
+        PFileUtils.setUserDefinedFileAttribute(c, "project", "other");
+        PFileUtils.setUserDefinedFileAttribute(c, "status", "done");
+    }
+
+    /**
+     * Tests equality and prefix queries, and that writes through PFileUtils
+     * are reflected in the index.
+     *
+     * @throws IOException if the index cannot be accessed
+     */
+    @Test
+    public void testQueries() throws IOException {
+
+        try (AttributeIndex index = new AttributeIndex(new File(
+                folder.getRoot(), "index"))) {
+            index.build(root);
+
+            assertEquals(3, index.size());
+            assertEquals(Collections.singleton(a),
+                    index.find("project", "platypus"));
+            assertEquals(new HashSet<File>(Arrays.asList(a, b)),
+                    index.findByPrefix("project", "platypus"));
+            assertEquals(new HashSet<File>(Arrays.asList(a, b, c)),
+                    index.findByPrefix("project", ""));
+            assertTrue(index.find("status", "platypus").isEmpty());
+
+            PFileUtils.setUserDefinedFileAttribute(a, "status", "done");
+            PFileUtils.clearUserDefinedFileAttribute(c, "status");
+            assertEquals(Collections.singleton(a),
+                    index.find("status", "done"));
+
+            Files.delete(b.toPath());
+            index.update(b.getParentFile());
+            assertEquals(Collections.singleton(a),
+                    index.findByPrefix("project", "platypus"));
+        }
+    }
+
+    /**
+     * Tests that the index survives being saved and reloaded.
+     *
+     * @throws IOException if the index cannot be accessed
+     */
+    @Test
+    public void testPersistence() throws IOException {
+
+        File indexFile = new File(folder.getRoot(), "index");
+        try (AttributeIndex index = new AttributeIndex(indexFile)) {
+            index.build(root);
+        }
+
+        try (AttributeIndex index = new AttributeIndex(indexFile)) {
+            assertEquals(3, index.size());
+            assertEquals(Collections.singleton(c),
+                    index.find("status", "done"));
+            assertEquals("other", index.getAttributes(c).get("project"));
+
+            // the reloaded index still tracks its root
+            PFileUtils.setUserDefinedFileAttribute(b, "status", "done");
+            assertEquals(2, index.find("status", "done").size());
+        }
+    }
+
+    /**
+     * Tests that saving appends changes to the log instead of rewriting the
+     * index file, that the log is replayed on loading, and that the index
+     * file is rewritten once the log outgrows it.
+     *
+     * @throws IOException if the index cannot be accessed
+     */
+    @Test
+    public void testIncrementalSave() throws IOException {
+
+        File indexFile = new File(folder.getRoot(), "index");
+        File logFile = new File(folder.getRoot(), "index.log");
+        long indexSize;
+        try (AttributeIndex index = new AttributeIndex(indexFile)) {
+            index.build(root);
+            index.save();
+            indexSize = indexFile.length();
+            assertFalse(logFile.exists());
+
+            PFileUtils.setUserDefinedFileAttribute(a, "status", "done");
+            PFileUtils.clearUserDefinedFileAttribute(c, "status");
+            index.save();
+            assertEquals(indexSize, indexFile.length());
+            assertTrue(logFile.length() > 0);
+        }
+
+        try (AttributeIndex index = new AttributeIndex(indexFile)) {
+            assertEquals(Collections.singleton(a),
+                    index.find("status", "done"));
+            assertEquals("other", index.getAttributes(c).get("project"));
+
+            // each save logs the changed file until the log is compacted
+            for (int i = 0; i < 100 && logFile.exists(); i++) {
+                PFileUtils.setUserDefinedFileAttribute(b, "count", "" + i);
+                index.save();
+            }
+            assertFalse(logFile.exists());
+            PFileUtils.setUserDefinedFileAttribute(b, "count", "last");
+        }
+
+        try (AttributeIndex index = new AttributeIndex(indexFile)) {
+            assertEquals(Collections.singleton(b), index.find("count", "last"));
+            assertEquals(3, index.size());
+        }
+    }
+
+    private File create(String name) throws IOException {
+        File file = new File(root, name);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), name.getBytes("UTF-8"));
+        return file;
+    }
+}
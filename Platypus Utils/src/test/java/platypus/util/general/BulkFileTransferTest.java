@@ -0,0 +1,155 @@
+package platypus.util.general;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test class for BulkFileTransfer.
+ *
+ * @author Jingchen Xu
+ */
+public class BulkFileTransferTest {
+
+    /**
+     * Temporary folder for the source and target trees
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests copying a tree of small and large files, then skipping them when
+     * copying again.
+     *
+     * @throws IOException if the test files cannot be accessed
+     */
+    @Test
+    public void testCopyTree() throws IOException {
+
+        File source = folder.newFolder("source");
+        File target = new File(folder.getRoot(), "target");
+        byte[] large = new byte[(int) (3 * PUnitUtils.BYTES_PER_MEBIBYTE)];
+        new Random(1).nextBytes(large);
+        File small = write(source, "a/small.txt", "small".getBytes("UTF-8"));
+        write(source, "a/b/large.bin", large);
+
+        boolean attributes = Files.getFileStore(source.toPath())
+                .supportsFileAttributeView(UserDefinedFileAttributeView.class);
+        if (attributes)
+            PFileUtils.setUserDefinedFileAttribute(small, "tag", "value");
+
+        BulkFileTransfer transfer = new BulkFileTransfer(2);
+        BulkFileTransfer.Progress progress = transfer.copyTree(source, target);
+
+        assertEquals(2, progress.getTransferredFiles());
+        assertEquals(large.length + 5, progress.getTransferredBytes());
+        assertArrayEquals(large, Files.readAllBytes(
+                new File(target, "a/b/large.bin").toPath()));
+        File copied = new File(target, "a/small.txt");
+        assertEquals("small", new String(Files.readAllBytes(copied.toPath()),
+                "UTF-8"));
+        if (attributes)
+            assertEquals("value",
+                    PFileUtils.readUserDefinedFileAttribute(copied, "tag"));
+
+        progress = transfer.copyTree(source, target);
+        assertEquals(0, progress.getTransferredFiles());
+        assertEquals(2, progress.getSkippedFiles());
+    }
+
+    /**
+     * Tests moving a tree.
+     *
+     * @throws IOException if the test files cannot be accessed
+     */
+    @Test
+    public void testMoveTree() throws IOException {
+
+        File source = folder.newFolder("source");
+        File target = new File(folder.getRoot(), "target");
+        write(source, "a/one.txt", "one".getBytes("UTF-8"));
+        write(source, "a/b/two.txt", "two".getBytes("UTF-8"));
+
+        BulkFileTransfer.Progress progress = new BulkFileTransfer()
+                .moveTree(source, target);
+
+        assertEquals(2, progress.getTransferredFiles());
+        assertFalse(source.exists());
+        assertEquals("two", new String(Files.readAllBytes(
+                new File(target, "a/b/two.txt").toPath()), "UTF-8"));
+    }
+
+    /**
+     * Tests that moving onto a target with the same size and modification
+     * time but different contents replaces the target instead of deleting
+     * the source.
+     *
+     * @throws IOException if the test files cannot be accessed
+     */
+    @Test
+    public void testMoveOntoDifferentTarget() throws IOException {
+
+        File source = folder.newFolder("source");
+        File target = new File(folder.getRoot(), "target");
+        File from = write(source, "one.txt", "new".getBytes("UTF-8"));
+        File to = write(target, "one.txt", "old".getBytes("UTF-8"));
+        to.setLastModified(from.lastModified());
+
+        BulkFileTransfer.Progress progress = new BulkFileTransfer()
+                .moveTree(source, target);
+
+        assertEquals(1, progress.getTransferredFiles());
+        assertEquals(0, progress.getSkippedFiles());
+        assertFalse(from.exists());
+        assertEquals("new", new String(Files.readAllBytes(to.toPath()),
+                "UTF-8"));
+    }
+
+    /**
+     * Tests that moving onto an identical target missing a user defined
+     * attribute carries the attribute over before deleting the source.
+     *
+     * @throws IOException if the test files cannot be accessed
+     */
+    @Test
+    public void testMoveOntoIdenticalTarget() throws IOException {
+
+        File source = folder.newFolder("source");
+        File target = new File(folder.getRoot(), "target");
+        File from = write(source, "one.txt", "same".getBytes("UTF-8"));
+        File to = write(target, "one.txt", "same".getBytes("UTF-8"));
+        assumeTrue(Files.getFileStore(from.toPath())
+                .supportsFileAttributeView(UserDefinedFileAttributeView.class));
+        PFileUtils.setUserDefinedFileAttribute(from, "tag", "value");
+        Files.setLastModifiedTime(to.toPath(),
+                Files.getLastModifiedTime(from.toPath()));
+
+        BulkFileTransfer.Progress progress = new BulkFileTransfer()
+                .moveTree(source, target);
+
+        assertEquals(0, progress.getTransferredFiles());
+        assertEquals(1, progress.getSkippedFiles());
+        assertFalse(from.exists());
+        assertEquals("value",
+                PFileUtils.readUserDefinedFileAttribute(to, "tag"));
+    }
+
+    private static File write(File root, String name, byte[] contents)
+            throws IOException {
+        File file = new File(root, name);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), contents);
+        return file;
+    }
+}
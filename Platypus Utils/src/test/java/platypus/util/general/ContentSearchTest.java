@@ -0,0 +1,130 @@
+package platypus.util.general;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import platypus.util.general.ContentSearch.Match;
+import platypus.util.general.ContentSearch.Results;
+
+/**
+ * Test class for ContentSearch.
+ *
+ * @author Jingchen Xu
+ */
+public class ContentSearchTest {
+
+    /**
+     * Temporary folder for the searched files
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests searching for several overlapping patterns, and that binary files
+     * are skipped.
+     *
+     * @throws IOException if the test files cannot be accessed
+     */
+    @Test
+    public void testMultiPattern() throws IOException {
+
+        write("a.txt", "first line\r\nthe tortoise and the hare\nlast hare");
+        write("sub/b.txt", "no matches here\n");
+        write("c.bin", "hare\u0000hare");
+
+        List<Match> matches = new ArrayList<Match>();
+        try (Results results = new ContentSearch("hare", "the", "e h")
+                .search(folder.getRoot())) {
+            while (results.hasNext())
+                matches.add(results.next());
+        }
+        Collections.sort(matches, new Comparator<Match>() {
+            @Override
+            public int compare(Match a, Match b) {
+                return Long.compare(a.getOffset(), b.getOffset());
+            }
+        });
+
+        assertEquals(5, matches.size());
+        assertMatch(matches.get(0), 1, 12, 2, "the tortoise and the hare");
+        assertMatch(matches.get(1), 1, 29, 2, "the tortoise and the hare");
+        assertMatch(matches.get(2), 2, 31, 2, "the tortoise and the hare");
+        assertMatch(matches.get(3), 0, 33, 2, "the tortoise and the hare");
+        assertMatch(matches.get(4), 0, 43, 3, "last hare");
+    }
+
+    /**
+     * Tests that closing the results stops the search early.
+     *
+     * @throws IOException if the test files cannot be accessed
+     */
+    @Test
+    public void testEarlyTermination() throws IOException {
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100000; i++)
+            sb.append("match\n");
+        for (int i = 0; i < 8; i++)
+            write("file" + i + ".txt", sb.toString());
+
+        Results results = new ContentSearch("match").search(folder.getRoot());
+        for (int i = 0; i < 10; i++)
+            assertEquals("match", results.next().getLine());
+        results.close();
+
+        assertTrue(!results.hasNext());
+    }
+
+    /**
+     * Tests that a line crossing the edge between two mapped windows is
+     * reported whole.
+     *
+     * @throws IOException if the test files cannot be accessed
+     */
+    @Test
+    public void testWindowEdge() throws IOException {
+
+        long edge = 256 * PUnitUtils.BYTES_PER_MEBIBYTE;
+        File file = new File(folder.getRoot(), "large.txt");
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.setLength(edge + 1024);
+            out.seek(edge - 8);
+            out.write("\nline with needle\n".getBytes("UTF-8"));
+        }
+
+        ContentSearch search = new ContentSearch("needle");
+        search.setSkipBinary(false);
+        try (Results results = search.search(Collections.singleton(file))) {
+            assertMatch(results.next(), 0, edge + 3, 2, "line with needle");
+            assertTrue(!results.hasNext());
+        }
+    }
+
+    private static void assertMatch(Match match, int pattern, long offset,
+            long lineNumber, String line) {
+        assertEquals(pattern, match.getPattern());
+        assertEquals(offset, match.getOffset());
+        assertEquals(lineNumber, match.getLineNumber());
+        assertEquals(line, match.getLine());
+    }
+
+    private File write(String name, String contents) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), contents.getBytes("UTF-8"));
+        return file;
+    }
+}
@@ -0,0 +1,138 @@
+package platypus.util.general;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test class for DuplicateFinder.
+ *
+ * @author Jingchen Xu
+ */
+public class DuplicateFinderTest {
+
+    /**
+     * Temporary folder for the files to compare
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests that only files with identical contents are grouped, including
+     * large files which differ only between their first and last kibibytes.
+     *
+     * @throws IOException if the test files cannot be accessed
+     */
+    @Test
+    public void testFindDuplicates() throws IOException {
+
+        byte[] large = new byte[64 * 1024];
+        byte[] largeVariant = large.clone();
+        largeVariant[large.length / 2] = 1;
+
+        File a1 = write("a1", "hello".getBytes("UTF-8"));
+        File a2 = write("sub/a2", "hello".getBytes("UTF-8"));
+        write("b", "world".getBytes("UTF-8"));
+        File c1 = write("c1", large);
+        File c2 = write("sub/c2", large);
+        File c3 = write("sub/deeper/c3", large);
+        write("d", largeVariant);
+        write("empty1", new byte[0]);
+        write("empty2", new byte[0]);
+
+        List<List<File>> groups = new DuplicateFinder(2, "SHA-256")
+                .findDuplicates(folder.getRoot());
+
+        assertEquals(2, groups.size());
+        Set<List<File>> expected = new HashSet<List<File>>();
+        expected.add(Arrays.asList(a1, a2));
+        expected.add(Arrays.asList(c1, c2, c3));
+        assertEquals(expected, new HashSet<List<File>>(groups));
+    }
+
+    /**
+     * Tests that full hashes are cached in a user defined attribute.
+     *
+     * @throws IOException if the test files cannot be accessed
+     */
+    @Test
+    public void testHashAttribute() throws IOException {
+
+        Assume.assumeTrue(Files.getFileStore(folder.getRoot().toPath())
+                .supportsFileAttributeView(UserDefinedFileAttributeView.class));
+
+        File a1 = write("a1", "hello".getBytes("UTF-8"));
+        File a2 = write("a2", "hello".getBytes("UTF-8"));
+
+        DuplicateFinder finder = new DuplicateFinder();
+        finder.setHashAttribute("test.hash");
+        assertEquals(1, finder.findDuplicates(folder.getRoot()).size());
+
+        String cached = PFileUtils.readUserDefinedFileAttribute(a1,
+                "test.hash");
+        assertNotNull(cached);
+        assertTrue(cached.startsWith("SHA-256:" + a1.length() + ":"
+                + a1.lastModified()));
+        String hash = cached.substring(cached.lastIndexOf(':'));
+        assertTrue(PFileUtils.readUserDefinedFileAttribute(a2, "test.hash")
+                .endsWith(hash));
+
+        // a stale cached hash is ignored
+        PFileUtils.setUserDefinedFileAttribute(a2, "test.hash", "0:0:bogus");
+        assertEquals(1, finder.findDuplicates(folder.getRoot()).size());
+    }
+
+    /**
+     * Tests that a later run reuses cached hashes, but only those computed
+     * with the same algorithm.
+     *
+     * @throws IOException if the test files cannot be accessed
+     */
+    @Test
+    public void testCachedHashReused() throws IOException {
+
+        Assume.assumeTrue(Files.getFileStore(folder.getRoot().toPath())
+                .supportsFileAttributeView(UserDefinedFileAttributeView.class));
+
+        File a = write("a", "hello".getBytes("UTF-8"));
+        File b = write("b", "world".getBytes("UTF-8"));
+
+        DuplicateFinder finder = new DuplicateFinder(2, "SHA-256");
+        finder.setHashAttribute("test.hash");
+        assertEquals(0, finder.findDuplicates(folder.getRoot()).size());
+
+        // give b the cached hash of a; only a run trusting the cache can
+        // then report them as duplicates
+        String cached = PFileUtils.readUserDefinedFileAttribute(a,
+                "test.hash");
+        String hash = cached.substring(cached.lastIndexOf(':') + 1);
+        PFileUtils.setUserDefinedFileAttribute(b, "test.hash", "SHA-256:"
+                + b.length() + ":" + b.lastModified() + ":" + hash);
+        assertEquals(1, finder.findDuplicates(folder.getRoot()).size());
+
+        DuplicateFinder md5 = new DuplicateFinder(2, "MD5");
+        md5.setHashAttribute("test.hash");
+        assertEquals(0, md5.findDuplicates(folder.getRoot()).size());
+    }
+
+    private File write(String name, byte[] contents) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), contents);
+        return file;
+    }
+}
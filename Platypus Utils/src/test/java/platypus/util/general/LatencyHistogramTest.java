@@ -0,0 +1,127 @@
+package platypus.util.general;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Test class for LatencyHistogram and the PUnitUtils formatting methods.
+ *
+ * @author Jingchen Xu
+ */
+public class LatencyHistogramTest {
+
+    /**
+     * Tests percentiles against a uniform distribution of values.
+     */
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram h = new LatencyHistogram(PUnitUtils.NANOSECS_PER_SEC,
+                3);
+        for (long v = 1; v <= 100000; v++)
+            h.recordValue(v);
+
+        assertEquals(100000, h.getTotalCount());
+        assertEquals(1, h.getMin());
+        assertEquals(100000, h.getMax());
+        assertWithinPrecision(50000, h.getValueAtPercentile(50));
+        assertWithinPrecision(99000, h.getValueAtPercentile(99));
+        assertEquals(100000, h.getValueAtPercentile(100));
+        assertWithinPrecision(50000, (long) h.getMean());
+    }
+
+    /**
+     * Tests that values above the highest trackable value are clamped.
+     */
+    @Test
+    public void testClamp() {
+        LatencyHistogram h = new LatencyHistogram(1000, 2);
+        h.recordValue(Long.MAX_VALUE);
+
+        assertEquals(1, h.getTotalCount());
+        assertEquals(1000, h.getMax());
+    }
+
+    /**
+     * Tests that concurrently recorded values are all counted and that
+     * snapshots drain the histogram.
+     *
+     * @throws InterruptedException if interrupted while waiting for threads
+     */
+    @Test
+    public void testConcurrentRecordAndSnapshot() throws InterruptedException {
+        final LatencyHistogram h = new LatencyHistogram();
+        final LatencyHistogram merged = h.createEmptyCopy();
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 50000; i++)
+                        h.recordValue(i);
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+
+        // take interval snapshots while recording is in progress
+        while (threads.get(0).isAlive())
+            merged.add(h.snapshotAndReset());
+        for (Thread thread : threads)
+            thread.join();
+        merged.add(h.snapshotAndReset());
+
+        assertEquals(0, h.getTotalCount());
+        assertEquals(200000, merged.getTotalCount());
+        assertEquals(0, merged.getMin());
+        assertWithinPrecision(49999, merged.getMax());
+    }
+
+    /**
+     * Tests that merging keeps the exact minimum and maximum rather than the
+     * floors of their buckets.
+     */
+    @Test
+    public void testMergeExtremes() {
+        LatencyHistogram h = new LatencyHistogram(PUnitUtils.NANOSECS_PER_SEC,
+                2);
+        h.recordValue(1234567);
+        h.recordValue(7654321);
+
+        LatencyHistogram merged = h.createEmptyCopy();
+        merged.add(h);
+        merged.add(merged.createEmptyCopy());
+
+        assertEquals(2, merged.getTotalCount());
+        assertEquals(1234567, merged.getMin());
+        assertEquals(7654321, merged.getMax());
+        assertEquals(7654321, merged.getValueAtPercentile(100));
+    }
+
+    /**
+     * Tests duration and size formatting.
+     */
+    @Test
+    public void testFormatting() {
+        assertEquals("999 ns", PUnitUtils.formatDuration(999));
+        assertEquals("1.50 ms", PUnitUtils.formatDuration(1500000));
+        assertEquals("2.00 s",
+                PUnitUtils.formatDuration(2 * PUnitUtils.NANOSECS_PER_SEC));
+        assertEquals("1.50 KiB", PUnitUtils.formatSize(1536));
+        assertEquals("3.00 GiB",
+                PUnitUtils.formatSize(3 * PUnitUtils.BYTES_PER_GIBIBYTE));
+        assertEquals("2.00 MiB/s", PUnitUtils.formatThroughput(
+                PUnitUtils.BYTES_PER_MEBIBYTE, PUnitUtils.NANOSECS_PER_SEC / 2));
+    }
+
+    private static void assertWithinPrecision(long expected, long actual) {
+        assertTrue("expected ~" + expected + " but was " + actual,
+                Math.abs(expected - actual) <= expected / 1000 + 1);
+    }
+}
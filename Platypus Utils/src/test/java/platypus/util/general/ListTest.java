@@ -1,11 +1,17 @@
 package platypus.util.general;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.TreeMap;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -54,4 +60,174 @@ public class ListTest {
         assertEquals(list, sList);
     }
 
+    /**
+     * Tests binary search and lower and upper bounds on lists and arrays.
+     */
+    @Test
+    public void testSearch() {
+
+        List<Integer> list = Arrays.asList(1, 3, 3, 3, 7);
+        assertEquals(0, PListUtils.lowerBound(list, 0));
+        assertEquals(1, PListUtils.lowerBound(list, 3));
+        assertEquals(4, PListUtils.upperBound(list, 3));
+        assertEquals(5, PListUtils.upperBound(list, 7));
+        assertEquals(4, PListUtils.binarySearch(list, 7));
+        assertEquals(-5, PListUtils.binarySearch(list, 5));
+        assertEquals(3, PListUtils.lowerBound(Arrays.asList(7, 3, 3, 1), 2,
+                Collections.reverseOrder()));
+
+        // lists without random access are searched through an iterator
+        Random rand = new Random(5);
+        for (int n = 0; n <= 40; n++) {
+            List<Integer> array = randomSorted(rand, n, 20);
+            List<Integer> linked = new LinkedList<Integer>(array);
+            for (int key = -1; key <= 21; key++) {
+                assertEquals(PListUtils.lowerBound(array, key),
+                        PListUtils.lowerBound(linked, key));
+                assertEquals(PListUtils.upperBound(array, key),
+                        PListUtils.upperBound(linked, key));
+                int index = PListUtils.binarySearch(linked, key);
+                if (index >= 0)
+                    assertEquals(key, (int) linked.get(index));
+                else
+                    assertEquals(PListUtils.lowerBound(array, key), -index - 1);
+            }
+        }
+
+        int[] ints = { 1, 3, 3, 3, 7, Integer.MAX_VALUE };
+        assertEquals(1, PListUtils.lowerBound(ints, 3));
+        assertEquals(4, PListUtils.upperBound(ints, 3));
+        assertEquals(6, PListUtils.upperBound(ints, Integer.MAX_VALUE));
+        long[] longs = { -5, 0, 0, 9 };
+        assertEquals(1, PListUtils.lowerBound(longs, 0));
+        assertEquals(3, PListUtils.upperBound(longs, 0));
+    }
+
+    /**
+     * Tests that a k-way merge matches sorting the concatenated lists, and is
+     * stable.
+     */
+    @Test
+    public void testMerge() {
+
+        Random rand = new Random(11);
+        for (int k = 0; k <= 9; k++) {
+            List<List<Integer>> lists = new ArrayList<List<Integer>>();
+            List<Integer> expected = new ArrayList<Integer>();
+            for (int i = 0; i < k; i++) {
+                List<Integer> list = randomSorted(rand, rand.nextInt(50), 30);
+                lists.add(list);
+                expected.addAll(list);
+            }
+            Collections.sort(expected);
+            assertEquals(expected, PListUtils.merge(lists, null));
+        }
+
+        // equal elements come out in the order of their lists
+        List<String> a = Arrays.asList("a1", "b1");
+        List<String> b = Arrays.asList("a2", "b2", "c2");
+        List<String> c = Arrays.asList("a3");
+        List<String> merged = PListUtils.merge(Arrays.asList(a, b, c),
+                new Comparator<String>() {
+                    @Override
+                    public int compare(String x, String y) {
+                        return x.charAt(0) - y.charAt(0);
+                    }
+                });
+        assertEquals(Arrays.asList("a1", "a2", "a3", "b1", "b2", "c2"), merged);
+    }
+
+    /**
+     * Tests union, intersection and difference of lists and arrays against
+     * counted multisets, with both similar and very different input sizes.
+     */
+    @Test
+    public void testSetOperations() {
+
+        Random rand = new Random(5);
+        int[][] sizes = { { 0, 0 }, { 0, 10 }, { 40, 50 }, { 5, 2000 },
+                { 2000, 5 }, { 1000, 1000 } };
+        for (int[] size : sizes) {
+            List<Integer> a = randomSorted(rand, size[0], 500);
+            List<Integer> b = randomSorted(rand, size[1], 500);
+            List<Integer> linkedA = new LinkedList<Integer>(a);
+
+            List<Integer> union = expected(a, b, 0);
+            List<Integer> intersection = expected(a, b, 1);
+            List<Integer> difference = expected(a, b, 2);
+
+            assertEquals(union, PListUtils.union(a, b, null));
+            assertEquals(intersection, PListUtils.intersection(a, b, null));
+            assertEquals(intersection, PListUtils.intersection(b, a, null));
+            assertEquals(difference, PListUtils.difference(a, b, null));
+            assertEquals(difference, PListUtils.difference(linkedA, b, null));
+
+            List<Integer> lazy = new ArrayList<Integer>();
+            for (Integer e : PListUtils.lazyDifference(linkedA, b, null))
+                lazy.add(e);
+            assertEquals(difference, lazy);
+
+            int[] ia = toInts(a), ib = toInts(b);
+            assertArrayEquals(toInts(union), PListUtils.union(ia, ib));
+            assertArrayEquals(toInts(intersection),
+                    PListUtils.intersection(ia, ib));
+            assertArrayEquals(toInts(difference), PListUtils.difference(ia, ib));
+
+            long[] la = toLongs(a), lb = toLongs(b);
+            assertArrayEquals(toLongs(union), PListUtils.union(la, lb));
+            assertArrayEquals(toLongs(intersection),
+                    PListUtils.intersection(la, lb));
+            assertArrayEquals(toLongs(difference),
+                    PListUtils.difference(la, lb));
+        }
+    }
+
+    private static List<Integer> randomSorted(Random rand, int size, int max) {
+        List<Integer> list = new ArrayList<Integer>(size);
+        for (int i = 0; i < size; i++)
+            list.add(rand.nextInt(max));
+        Collections.sort(list);
+        return list;
+    }
+
+    // 0 for union, 1 for intersection, 2 for difference
+    private static List<Integer> expected(List<Integer> a, List<Integer> b,
+            int operation) {
+        Map<Integer, int[]> counts = new TreeMap<Integer, int[]>();
+        for (Integer e : a) {
+            if (!counts.containsKey(e))
+                counts.put(e, new int[2]);
+            counts.get(e)[0]++;
+        }
+        for (Integer e : b) {
+            if (!counts.containsKey(e))
+                counts.put(e, new int[2]);
+            counts.get(e)[1]++;
+        }
+
+        List<Integer> output = new ArrayList<Integer>();
+        for (Map.Entry<Integer, int[]> entry : counts.entrySet()) {
+            int m = entry.getValue()[0], n = entry.getValue()[1];
+            int count = operation == 0 ? Math.max(m, n)
+                    : operation == 1 ? Math.min(m, n) : Math.max(m - n, 0);
+            for (int i = 0; i < count; i++)
+                output.add(entry.getKey());
+        }
+        return output;
+    }
+
+    private static int[] toInts(List<Integer> list) {
+        int[] output = new int[list.size()];
+        for (int i = 0; i < output.length; i++)
+            output[i] = list.get(i);
+        return output;
+    }
+
+    private static long[] toLongs(List<Integer> list) {
+        long[] output = new long[list.size()];
+        for (int i = 0; i < output.length; i++)
+            output[i] = list.get(i);
+        return output;
+    }
+
 }
@@ -0,0 +1,81 @@
+package platypus.util.general;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Test class for NaturalOrderComparator.
+ *
+ * @author Jingchen Xu
+ */
+public class NaturalOrderComparatorTest {
+
+    /**
+     * Tests that digit runs are compared by numeric value.
+     */
+    @Test
+    public void testNumericRuns() {
+        NaturalOrderComparator c = NaturalOrderComparator.NATURAL_ORDER;
+
+        assertTrue(c.compare("part2", "part10") < 0);
+        assertTrue(c.compare("part10", "part2") > 0);
+        assertTrue(c.compare("a1b2", "a1b10") < 0);
+        assertTrue(c.compare("part", "part1") < 0);
+        assertEquals(0, c.compare("part10", "part10"));
+    }
+
+    /**
+     * Tests that numbers longer than a long are compared without overflow.
+     */
+    @Test
+    public void testLongNumbers() {
+        NaturalOrderComparator c = NaturalOrderComparator.NATURAL_ORDER;
+
+        assertTrue(c.compare("x99999999999999999999999",
+                "x100000000000000000000000") < 0);
+        assertTrue(c.compare("x123456789012345678901234",
+                "x123456789012345678901233") > 0);
+    }
+
+    /**
+     * Tests that leading zeros only break ties.
+     */
+    @Test
+    public void testLeadingZeros() {
+        NaturalOrderComparator c = NaturalOrderComparator.NATURAL_ORDER;
+
+        assertTrue(c.compare("file007", "file8") < 0);
+        assertTrue(c.compare("file7", "file007") < 0);
+        assertTrue(c.compare("file007a", "file7b") < 0);
+    }
+
+    /**
+     * Tests case-insensitive comparison.
+     */
+    @Test
+    public void testIgnoreCase() {
+        assertTrue(NaturalOrderComparator.NATURAL_ORDER.compare("Part2",
+                "part2") < 0);
+        assertEquals(0, NaturalOrderComparator.CASE_INSENSITIVE_NATURAL_ORDER
+                .compare("Part2", "pART2"));
+    }
+
+    /**
+     * Tests sorting with the comparator variant of quick sort.
+     */
+    @Test
+    public void testQuickSort() {
+        List<String> list = Arrays.asList("part10", "part1", "Part3", "part2",
+                "part01");
+        List<String> sorted = PListUtils.quickSort(list,
+                NaturalOrderComparator.CASE_INSENSITIVE_NATURAL_ORDER);
+
+        assertEquals(Arrays.asList("part1", "part01", "part2", "Part3",
+                "part10"), sorted);
+    }
+}
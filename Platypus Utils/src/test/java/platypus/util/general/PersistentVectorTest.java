@@ -0,0 +1,124 @@
+package platypus.util.general;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test class for PersistentVector.
+ *
+ * @author Jingchen Xu
+ */
+public class PersistentVectorTest {
+
+    /**
+     * Tests appending and removing from the end across several trie levels.
+     */
+    @Test
+    public void testAppendAndPop() {
+
+        int n = 40000;
+        PersistentVector<Integer> v = PersistentVector.empty();
+        for (int i = 0; i < n; i++)
+            v = v.plus(i);
+
+        assertEquals(n, v.size());
+        for (int i = 0; i < n; i++)
+            assertEquals(i, (int) v.get(i));
+
+        int i = 0;
+        for (int e : v)
+            assertEquals(i++, e);
+
+        PersistentVector<Integer> half = v;
+        while (half.size() > n / 2)
+            half = half.minusLast();
+        assertEquals(n / 2, half.size());
+        assertEquals(n / 2 - 1, (int) half.get(n / 2 - 1));
+
+        while (!half.isEmpty())
+            half = half.minusLast();
+
+        // older versions are unaffected
+        assertEquals(n, v.size());
+        assertEquals(n - 1, (int) v.get(n - 1));
+    }
+
+    /**
+     * Tests random modifications against an <code>ArrayList</code>, and that
+     * every earlier version keeps its contents.
+     */
+    @Test
+    public void testRandomModifications() {
+
+        Random rand = new Random(42);
+        List<Integer> expected = new ArrayList<Integer>();
+        PersistentVector<Integer> v = PersistentVector.empty();
+        List<List<Integer>> expectedVersions = new ArrayList<List<Integer>>();
+        List<PersistentVector<Integer>> versions = new ArrayList<PersistentVector<Integer>>();
+
+        for (int step = 0; step < 2000; step++) {
+            int op = rand.nextInt(6);
+            if (op <= 1 || expected.isEmpty()) {
+                expected.add(step);
+                v = v.plus(step);
+            }
+            else if (op == 2) {
+                int index = rand.nextInt(expected.size() + 1);
+                expected.add(index, step);
+                v = v.plus(index, step);
+            }
+            else if (op == 3) {
+                int index = rand.nextInt(expected.size());
+                expected.set(index, step);
+                v = v.with(index, step);
+            }
+            else if (op == 4) {
+                int from = rand.nextInt(expected.size());
+                int to = from + rand.nextInt(Math.min(70, expected.size()
+                        - from + 1));
+                expected.subList(from, to).clear();
+                v = v.minus(from, to);
+            }
+            else {
+                List<Integer> block = Arrays.asList(step, step, step);
+                int index = rand.nextInt(expected.size() + 1);
+                expected.addAll(index, block);
+                v = v.plusAll(index, block);
+            }
+            assertEquals(expected, v);
+
+            if (step % 100 == 0) {
+                expectedVersions.add(new ArrayList<Integer>(expected));
+                versions.add(v);
+            }
+        }
+
+        for (int i = 0; i < versions.size(); i++)
+            assertEquals(expectedVersions.get(i), versions.get(i));
+    }
+
+    /**
+     * Tests that the vector cannot be modified through the
+     * <code>List</code> interface.
+     */
+    @Test
+    public void testImmutable() {
+        PersistentVector<String> v = PersistentVector.copyOf(Arrays.asList(
+                "a", "b"));
+        try {
+            v.add("c");
+        }
+        catch (UnsupportedOperationException e) {
+            assertTrue(v.equals(Arrays.asList("a", "b")));
+            return;
+        }
+        throw new AssertionError("Vector was modified");
+    }
+}
@@ -0,0 +1,91 @@
+package platypus.util.general;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test class for TextFilePipeline.
+ *
+ * @author Jingchen Xu
+ */
+public class TextFilePipelineTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Temporary folder for input and output files
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests that lines are transformed in order across many small chunks,
+     * including lines longer than a chunk.
+     *
+     * @throws IOException if the test files cannot be accessed
+     */
+    @Test
+    public void testChunkedTransform() throws IOException {
+
+        StringBuilder input = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            input.append("the tortoise and the hare ").append(i);
+            expected.append("The Tortoise and the Hare ").append(i);
+            String terminator = i % 3 == 0 ? "\r\n" : "\n";
+            input.append(terminator);
+            expected.append(terminator);
+        }
+        for (int i = 0; i < 100; i++) {
+            input.append("long line ");
+            expected.append("Long Line ");
+        }
+
+        File in = folder.newFile("in.txt");
+        File out = folder.newFile("out.txt");
+        Files.write(in.toPath(), input.toString().getBytes(UTF8));
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            TextFilePipeline pipeline = new TextFilePipeline(
+                    Arrays.asList(TextFilePipeline.TITLE_FORMAT_IGNORE_TRANSITIVE),
+                    UTF8, 64, pool);
+            pipeline.process(in, out);
+        }
+        finally {
+            pool.shutdown();
+        }
+
+        assertEquals(expected.toString(),
+                new String(Files.readAllBytes(out.toPath()), UTF8));
+    }
+
+    /**
+     * Tests chaining of transformations.
+     *
+     * @throws IOException if the test files cannot be accessed
+     */
+    @Test
+    public void testChain() throws IOException {
+
+        File in = folder.newFile("in.txt");
+        File out = folder.newFile("out.txt");
+        Files.write(in.toPath(), "a1b22c333\nx.5\n\n".getBytes(UTF8));
+
+        new TextFilePipeline(TextFilePipeline.EXTRACT_INTEGERS,
+                TextFilePipeline.POSITIVE_INT_VALIDATION).process(in, out);
+
+        assertEquals("122333\n5\n1\n",
+                new String(Files.readAllBytes(out.toPath()), UTF8));
+    }
+}
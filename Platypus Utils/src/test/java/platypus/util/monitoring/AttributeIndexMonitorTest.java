@@ -0,0 +1,93 @@
+package platypus.util.monitoring;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.util.Collections;
+import java.util.Set;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import platypus.util.general.AttributeIndex;
+
+/**
+ * Test class for AttributeIndexMonitor.
+ *
+ * @author Jingchen Xu
+ */
+public class AttributeIndexMonitorTest {
+
+    /**
+     * Temporary folder for the indexed trees and the index file
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests that files tagged without going through PFileUtils are picked up,
+     * including in roots added after the monitor was started.
+     *
+     * @throws Exception if the test files cannot be accessed
+     */
+    @Test
+    public void testWatchRoots() throws Exception {
+
+        File first = folder.newFolder("first");
+        File second = folder.newFolder("second");
+        Assume.assumeTrue(Files.getFileStore(first.toPath())
+                .supportsFileAttributeView(UserDefinedFileAttributeView.class));
+
+        try (AttributeIndex index = new AttributeIndex(new File(
+                folder.getRoot(), "index"))) {
+            index.build(first);
+
+            AttributeIndexMonitor monitor = new AttributeIndexMonitor(index);
+            monitor.start();
+            try {
+                assertTrue(monitor.isRunning());
+                index.build(second);
+
+                File a = tag(new File(first, "a.txt"), "one");
+                File b = tag(new File(second, "sub/b.txt"), "two");
+                assertEquals(Collections.singleton(a),
+                        await(index, "one"));
+                assertEquals(Collections.singleton(b),
+                        await(index, "two"));
+            }
+            finally {
+                monitor.end();
+            }
+            assertFalse(monitor.isRunning());
+        }
+    }
+
+    private static File tag(File file, String value) throws IOException {
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), new byte[] { 1 });
+        Files.getFileAttributeView(file.toPath(),
+                UserDefinedFileAttributeView.class).write("project",
+                ByteBuffer.wrap(value.getBytes(Charset.defaultCharset())));
+        return file;
+    }
+
+    private static Set<File> await(AttributeIndex index, String value)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        Set<File> found = index.find("project", value);
+        while (found.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            found = index.find("project", value);
+        }
+        return found;
+    }
+}
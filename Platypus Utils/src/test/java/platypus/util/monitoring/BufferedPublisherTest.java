@@ -0,0 +1,188 @@
+package platypus.util.monitoring;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.event.ActionEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import platypus.util.monitoring.BufferedPublisher.OverflowStrategy;
+
+/**
+ * Test class for BufferedPublisher and its ListenedList adapter.
+ *
+ * @author Jingchen Xu
+ */
+public class BufferedPublisherTest {
+
+    private static final Executor SAME_THREAD = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    /**
+     * Tests that items are delivered only as they are requested.
+     */
+    @Test
+    public void testDemand() {
+
+        BufferedPublisher<Integer> publisher = new BufferedPublisher<Integer>(
+                16, OverflowStrategy.DROP_OLDEST, SAME_THREAD);
+        RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<Integer>();
+        publisher.subscribe(subscriber);
+
+        for (int i = 0; i < 5; i++)
+            publisher.submit(i);
+        assertTrue(subscriber.items.isEmpty());
+
+        subscriber.awaitSubscription().request(2);
+        assertEquals(Arrays.asList(0, 1), subscriber.items);
+
+        publisher.close();
+        assertFalse(subscriber.completed);
+        subscriber.awaitSubscription().request(Long.MAX_VALUE);
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), subscriber.items);
+        assertTrue(subscriber.completed);
+        assertEquals(0, publisher.getSubscriberCount());
+    }
+
+    /**
+     * Tests the dropping overflow strategies.
+     */
+    @Test
+    public void testOverflow() {
+        assertEquals(Arrays.asList(6, 7, 8, 9),
+                overflow(OverflowStrategy.DROP_OLDEST));
+        assertEquals(Arrays.asList(0, 1, 2, 3),
+                overflow(OverflowStrategy.DROP_NEWEST));
+        assertEquals(Arrays.asList(8, 9), overflow(OverflowStrategy.LATEST));
+    }
+
+    /**
+     * Tests that a blocking publisher waits for the subscriber to catch up.
+     *
+     * @throws InterruptedException if interrupted while waiting for delivery
+     */
+    @Test
+    public void testBlock() throws InterruptedException {
+
+        final BufferedPublisher<Integer> publisher = new BufferedPublisher<Integer>(
+                2, OverflowStrategy.BLOCK);
+        final RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<Integer>();
+        publisher.subscribe(subscriber);
+
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 10; i++)
+                    publisher.submit(i);
+                publisher.close();
+            }
+        };
+        producer.start();
+        producer.join(200);
+        assertTrue(producer.isAlive());
+
+        subscriber.awaitSubscription().request(Long.MAX_VALUE);
+        assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9),
+                subscriber.items);
+        assertEquals(0, publisher.getDroppedCount());
+    }
+
+    /**
+     * Tests publishing the events of a ListenedList.
+     *
+     * @throws InterruptedException if interrupted while waiting for delivery
+     */
+    @Test
+    public void testListenedList() throws InterruptedException {
+
+        ListenedList<String> list = new ListenedList<String>();
+        list.setActionCommand("changed");
+        ActionEventPublisher publisher = list.publish(1,
+                OverflowStrategy.LATEST);
+        RecordingSubscriber<ActionEvent> subscriber = new RecordingSubscriber<ActionEvent>();
+        publisher.subscribe(subscriber);
+
+        list.add("a");
+        list.add("b");
+        list.remove(0);
+        publisher.close();
+        list.add("c");
+
+        subscriber.awaitSubscription().request(Long.MAX_VALUE);
+        assertTrue(subscriber.done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, subscriber.items.size());
+        assertEquals("changed", subscriber.items.get(0).getActionCommand());
+        assertEquals(2, publisher.getDroppedCount());
+    }
+
+    private static List<Integer> overflow(OverflowStrategy strategy) {
+        BufferedPublisher<Integer> publisher = new BufferedPublisher<Integer>(
+                4, strategy, SAME_THREAD);
+        RecordingSubscriber<Integer> subscriber = new RecordingSubscriber<Integer>();
+        publisher.subscribe(subscriber);
+        for (int i = 0; i < 10; i++)
+            publisher.submit(i);
+        subscriber.awaitSubscription().request(Long.MAX_VALUE);
+        return subscriber.items;
+    }
+
+    private static class RecordingSubscriber<T> implements
+            Flow.Subscriber<T> {
+
+        volatile Flow.Subscription subscription;
+
+        final List<T> items = Collections.synchronizedList(new ArrayList<T>());
+
+        volatile boolean completed = false;
+
+        final CountDownLatch done = new CountDownLatch(1);
+
+        private final CountDownLatch subscribed = new CountDownLatch(1);
+
+        Flow.Subscription awaitSubscription() {
+            try {
+                assertTrue(subscribed.await(5, TimeUnit.SECONDS));
+            }
+            catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+            return subscription;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscribed.countDown();
+        }
+
+        @Override
+        public void onNext(T item) {
+            items.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+            done.countDown();
+        }
+    }
+}
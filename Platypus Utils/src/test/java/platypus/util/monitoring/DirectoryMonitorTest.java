@@ -0,0 +1,152 @@
+package platypus.util.monitoring;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import platypus.util.monitoring.DirectoryMonitor.DirectoryEvent;
+
+/**
+ * Test class for DirectoryMonitor.
+ *
+ * @author Jingchen Xu
+ */
+public class DirectoryMonitorTest {
+
+    /**
+     * Temporary folder for the watched tree
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DirectoryMonitor monitor;
+
+    private final BlockingQueue<DirectoryEvent> events = new LinkedBlockingQueue<DirectoryEvent>();
+
+    /**
+     * Starts watching the temporary folder.
+     *
+     * @throws IOException if the folder cannot be watched
+     */
+    @Before
+    public void setUp() throws IOException {
+        monitor = new DirectoryMonitor(folder.getRoot(), 200, 5000);
+        monitor.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                events.add((DirectoryEvent) e);
+            }
+        });
+        monitor.start();
+    }
+
+    /**
+     * Stops the monitor after each test.
+     */
+    @After
+    public void tearDown() {
+        monitor.end();
+    }
+
+    /**
+     * Tests that files created in new subdirectories are reported, and that
+     * files created and deleted within one batch are not.
+     *
+     * @throws IOException if the test files cannot be accessed
+     * @throws InterruptedException if interrupted while waiting for events
+     */
+    @Test
+    public void testRecursiveCoalescing() throws IOException,
+            InterruptedException {
+
+        File nested = new File(folder.getRoot(), "a/b/c.txt");
+        File temp = new File(folder.getRoot(), "temp.txt");
+        nested.getParentFile().mkdirs();
+        Files.write(nested.toPath(), new byte[] { 1 });
+        Files.write(temp.toPath(), new byte[] { 1 });
+        Files.delete(temp.toPath());
+
+        List<DirectoryEvent> received = awaitQuiet();
+        List<File> created = new ArrayList<File>();
+        for (DirectoryEvent e : received) {
+            created.addAll(e.getCreated());
+            assertFalse(e.getCreated().contains(temp));
+            assertFalse(e.getDeleted().contains(temp));
+        }
+        assertTrue(created.contains(nested.getParentFile()));
+        assertTrue(created.contains(nested));
+
+        // the new subdirectory is now watched as well
+        Files.write(nested.toPath(), new byte[] { 1, 2 });
+        received = awaitQuiet();
+        assertEquals(1, received.size());
+        assertTrue(received.get(0).getModified().contains(nested));
+
+        Files.delete(nested.toPath());
+        received = awaitQuiet();
+        assertEquals(1, received.size());
+        assertTrue(received.get(0).getDeleted().contains(nested));
+    }
+
+    /**
+     * Tests that many changes are delivered in a single batch.
+     *
+     * @throws IOException if the test files cannot be accessed
+     * @throws InterruptedException if interrupted while waiting for events
+     */
+    @Test
+    public void testBatching() throws IOException, InterruptedException {
+
+        for (int i = 0; i < 100; i++)
+            Files.write(new File(folder.getRoot(), i + ".txt").toPath(),
+                    new byte[] { 1 });
+
+        List<DirectoryEvent> received = awaitQuiet();
+        int created = 0;
+        for (DirectoryEvent e : received)
+            created += e.getCreated().size();
+        assertEquals(100, created);
+        assertTrue(received.size() < 10);
+    }
+
+    /**
+     * Tests that ending a monitor more than once is harmless.
+     *
+     * @throws InterruptedException if interrupted while waiting for the
+     *         monitor to stop
+     */
+    @Test
+    public void testEndTwice() throws InterruptedException {
+        monitor.end();
+        monitor.end();
+        monitor.join(5000);
+        assertFalse(monitor.isAlive());
+    }
+
+    private List<DirectoryEvent> awaitQuiet() throws InterruptedException {
+        List<DirectoryEvent> output = new ArrayList<DirectoryEvent>();
+        DirectoryEvent e = events.poll(10, TimeUnit.SECONDS);
+        while (e != null) {
+            output.add(e);
+            e = events.poll(1, TimeUnit.SECONDS);
+        }
+        return output;
+    }
+}
@@ -0,0 +1,145 @@
+package platypus.util.monitoring;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+
+import platypus.util.monitoring.HeapMonitor.HeapEvent;
+
+/**
+ * Test class for HeapMonitor. Requires no display and drives the monitor by
+ * requesting garbage collections.
+ *
+ * @author Jingchen Xu
+ */
+public class HeapMonitorTest {
+
+    private final HeapMonitor monitor = new HeapMonitor();
+
+    /**
+     * Stops the monitor after each test.
+     */
+    @After
+    public void tearDown() {
+        monitor.end();
+    }
+
+    /**
+     * Tests that a low collection threshold is reported after a collection.
+     *
+     * @throws InterruptedException if interrupted while waiting for events
+     */
+    @Test
+    public void testCollectionThreshold() throws InterruptedException {
+
+        LatchListener listener = new LatchListener(
+                HeapMonitor.COLLECTION_THRESHOLD_EXCEEDED);
+        monitor.addActionListener(listener);
+        monitor.setThreshold(1);
+        monitor.start();
+
+        // keep something alive in the old generation
+        List<byte[]> retained = new ArrayList<byte[]>();
+        for (int i = 0; i < 16; i++)
+            retained.add(new byte[64 * 1024]);
+        System.gc();
+
+        assertTrue(listener.latch.await(10, TimeUnit.SECONDS));
+        assertTrue(listener.event.getUsed() > 1);
+        assertEquals(16, retained.size());
+    }
+
+    /**
+     * Tests that collections are reported only when enabled.
+     *
+     * @throws InterruptedException if interrupted while waiting for events
+     */
+    @Test
+    public void testReportCollections() throws InterruptedException {
+
+        LatchListener listener = new LatchListener(HeapMonitor.COLLECTION);
+        monitor.addActionListener(listener);
+        monitor.setThreshold(Long.MAX_VALUE / 2);
+        monitor.start();
+
+        System.gc();
+        assertFalse(listener.latch.await(1, TimeUnit.SECONDS));
+
+        monitor.setReportCollections(true);
+        System.gc();
+        assertTrue(listener.latch.await(10, TimeUnit.SECONDS));
+        assertTrue(listener.event.getDuration() >= 0);
+    }
+
+    /**
+     * Tests that thresholds set before the monitor was started are restored
+     * when it is ended.
+     */
+    @Test
+    public void testRestoresThresholds() {
+
+        MemoryPoolMXBean pool = null;
+        for (MemoryPoolMXBean p : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (p.getType() == MemoryType.HEAP
+                    && p.isUsageThresholdSupported())
+                pool = p;
+        }
+        Assume.assumeTrue(pool != null);
+
+        long previous = pool.getUsageThreshold();
+        pool.setUsageThreshold(12345);
+        try {
+            monitor.setThreshold(1);
+            monitor.start();
+            assertEquals(1, pool.getUsageThreshold());
+            monitor.end();
+            assertEquals(12345, pool.getUsageThreshold());
+        }
+        finally {
+            pool.setUsageThreshold(previous);
+        }
+    }
+
+    /**
+     * Tests that a threshold of zero is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testZeroThreshold() {
+        monitor.setThreshold(0);
+    }
+
+    private static class LatchListener implements ActionListener {
+
+        private final String command;
+
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        private volatile HeapEvent event;
+
+        LatchListener(String command) {
+            this.command = command;
+        }
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            if (command.equals(e.getActionCommand())) {
+                event = (HeapEvent) e;
+                latch.countDown();
+            }
+        }
+    }
+}
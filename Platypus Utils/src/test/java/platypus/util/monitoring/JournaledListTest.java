@@ -0,0 +1,247 @@
+package platypus.util.monitoring;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test class for JournaledList.
+ *
+ * @author Jingchen Xu
+ */
+public class JournaledListTest {
+
+    /**
+     * Temporary folder for the snapshot and journal
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests that every kind of modification is replayed after reopening.
+     *
+     * @throws IOException if the journal cannot be accessed
+     */
+    @Test
+    public void testReplay() throws IOException {
+
+        File file = new File(folder.getRoot(), "list");
+        List<String> expected = new ArrayList<String>();
+        try (JournaledList<String> list = new JournaledList<String>(file,
+                JournaledList.STRING_CODEC)) {
+            modify(list);
+            modify(expected);
+            assertEquals(expected, list);
+        }
+
+        try (JournaledList<String> list = new JournaledList<String>(file,
+                JournaledList.STRING_CODEC)) {
+            assertEquals(expected, list);
+
+            list.add("more");
+            expected.add("more");
+        }
+
+        try (JournaledList<String> list = new JournaledList<String>(file,
+                JournaledList.STRING_CODEC)) {
+            assertEquals(expected, list);
+        }
+    }
+
+    /**
+     * Tests that a torn record at the end of the journal is discarded.
+     *
+     * @throws IOException if the journal cannot be accessed
+     */
+    @Test
+    public void testTornRecord() throws IOException {
+
+        File file = new File(folder.getRoot(), "list");
+        try (JournaledList<Integer> list = new JournaledList<Integer>(file,
+                JournaledList.INTEGER_CODEC)) {
+            list.addAll(Arrays.asList(1, 2, 3));
+            list.remove(0);
+        }
+
+        // a partial record, as left by a crash mid-write
+        Files.write(new File(folder.getRoot(), "list.journal").toPath(),
+                new byte[] { 0, 0, 0, 9, 1, 2 }, StandardOpenOption.APPEND);
+
+        try (JournaledList<Integer> list = new JournaledList<Integer>(file,
+                JournaledList.INTEGER_CODEC)) {
+            assertEquals(Arrays.asList(2, 3), list);
+            list.add(4);
+        }
+
+        try (JournaledList<Integer> list = new JournaledList<Integer>(file,
+                JournaledList.INTEGER_CODEC)) {
+            assertEquals(Arrays.asList(2, 3, 4), list);
+        }
+    }
+
+    /**
+     * Tests that group committed modifications are compacted into snapshots
+     * and survive reopening.
+     *
+     * @throws IOException if the journal cannot be accessed
+     */
+    @Test
+    public void testCompaction() throws IOException {
+
+        File file = new File(folder.getRoot(), "list");
+        List<Long> expected = new ArrayList<Long>();
+        try (JournaledList<Long> list = new JournaledList<Long>(file,
+                JournaledList.LONG_CODEC, 10, 1024)) {
+            for (long i = 0; i < 1000; i++) {
+                list.add(i);
+                expected.add(i);
+                if (i % 3 == 0) {
+                    list.set(list.size() / 2, -i);
+                    expected.set(expected.size() / 2, -i);
+                }
+                assertTrue(list.getJournalSize() <= 1024 + 64);
+            }
+        }
+
+        assertTrue(new File(folder.getRoot(), "list.snapshot").exists());
+        try (JournaledList<Long> list = new JournaledList<Long>(file,
+                JournaledList.LONG_CODEC)) {
+            assertEquals(expected, list);
+        }
+    }
+
+    /**
+     * Tests that a closed list can still be modified, without recording the
+     * modifications.
+     *
+     * @throws IOException if the journal cannot be accessed
+     */
+    @Test
+    public void testModifyAfterClose() throws IOException {
+
+        File file = new File(folder.getRoot(), "list");
+        JournaledList<Integer> list = new JournaledList<Integer>(file,
+                JournaledList.INTEGER_CODEC);
+        list.addAll(Arrays.asList(1, 2));
+        list.close();
+        list.close();
+
+        list.add(3);
+        list.set(0, 4);
+        list.remove(1);
+        assertEquals(Arrays.asList(4, 3), list);
+
+        try (JournaledList<Integer> reopened = new JournaledList<Integer>(
+                file, JournaledList.INTEGER_CODEC)) {
+            assertEquals(Arrays.asList(1, 2), reopened);
+        }
+    }
+
+    /**
+     * Tests that a list serializes as a plain list of its elements.
+     *
+     * @throws Exception if the list cannot be serialized
+     */
+    @Test
+    public void testSerialization() throws Exception {
+
+        File file = new File(folder.getRoot(), "list");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (JournaledList<String> list = new JournaledList<String>(file,
+                JournaledList.STRING_CODEC);
+                ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            list.addAll(Arrays.asList("a", "b"));
+            out.writeObject(list);
+        }
+
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()))) {
+            Object copy = in.readObject();
+            assertSame(ArrayList.class, copy.getClass());
+            assertEquals(Arrays.asList("a", "b"), copy);
+        }
+    }
+
+    /**
+     * Tests that modifications made through sub lists, iterators and the bulk
+     * methods added to <code>List</code> after Java 7 are replayed.
+     *
+     * @throws IOException if the journal cannot be accessed
+     */
+    @Test
+    public void testIndirectModifications() throws IOException {
+
+        File file = new File(folder.getRoot(), "list");
+        List<String> expected;
+        try (JournaledList<String> list = new JournaledList<String>(file,
+                JournaledList.STRING_CODEC)) {
+            list.addAll(Arrays.asList("d", "b", "e", "a", "c", "f"));
+
+            list.removeIf(new Predicate<String>() {
+                @Override
+                public boolean test(String s) {
+                    return s.equals("e");
+                }
+            });
+            list.replaceAll(new UnaryOperator<String>() {
+                @Override
+                public String apply(String s) {
+                    return s.toUpperCase();
+                }
+            });
+            Collections.sort(list);
+
+            List<String> sub = list.subList(1, 4);
+            sub.set(0, "x");
+            sub.add("y");
+            sub.subList(0, 1).clear();
+            Iterator<String> it = list.iterator();
+            it.next();
+            it.next();
+            it.remove();
+
+            expected = new ArrayList<String>(list);
+            assertEquals(Arrays.asList("A", "D", "y", "F"), expected);
+        }
+
+        try (JournaledList<String> list = new JournaledList<String>(file,
+                JournaledList.STRING_CODEC)) {
+            assertEquals(expected, list);
+        }
+    }
+
+    private static void modify(List<String> list) {
+        list.add("a");
+        list.add(null);
+        list.addAll(Arrays.asList("b", "c", "d", "e", "f"));
+        list.add(0, "first");
+        list.addAll(2, Arrays.asList("x", "y"));
+        list.set(3, "z");
+        list.remove(1);
+        list.remove("c");
+        list.subList(1, 3).clear();
+        list.removeAll(Arrays.asList("d", "nothing"));
+        list.retainAll(Arrays.asList("first", "e", "f", null));
+        list.add("g");
+    }
+}
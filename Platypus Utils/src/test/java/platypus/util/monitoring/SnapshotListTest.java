@@ -0,0 +1,85 @@
+package platypus.util.monitoring;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+import platypus.util.general.PersistentVector;
+import platypus.util.monitoring.SnapshotList.SnapshotEvent;
+
+/**
+ * Test class for SnapshotList.
+ *
+ * @author Jingchen Xu
+ */
+public class SnapshotListTest {
+
+    /**
+     * Tests that listeners receive snapshots which are unaffected by later
+     * modifications, one per modification.
+     */
+    @Test
+    public void testSnapshots() {
+
+        SnapshotList<String> list = new SnapshotList<String>(Arrays.asList(
+                "a", "b"));
+        list.setActionCommand("changed");
+
+        final List<SnapshotEvent<?>> events = new ArrayList<SnapshotEvent<?>>();
+        list.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                events.add((SnapshotEvent<?>) e);
+            }
+        });
+
+        PersistentVector<String> before = list.snapshot();
+        list.add("c");
+        list.set(0, "z");
+        list.addAll(Arrays.asList("d", "e"));
+        list.removeAll(Arrays.asList("b", "d"));
+        list.subList(0, 1).clear();
+        list.remove("nothing");
+
+        assertEquals(Arrays.asList("a", "b"), before);
+        assertEquals(Arrays.asList("c", "e"), list);
+        assertEquals(5, events.size());
+        assertEquals("changed", events.get(0).getActionCommand());
+        assertEquals(Arrays.asList("a", "b", "c"), events.get(0).getSnapshot());
+        assertEquals(Arrays.asList("z", "b", "c"), events.get(1).getSnapshot());
+        assertEquals(Arrays.asList("z", "b", "c", "d", "e"), events.get(2)
+                .getSnapshot());
+        assertEquals(events.get(2).getSnapshot(), events.get(3).getPrevious());
+        assertEquals(Arrays.asList("z", "c", "e"), events.get(3).getSnapshot());
+        assertEquals(list.snapshot(), events.get(4).getSnapshot());
+    }
+
+    /**
+     * Tests that an iterator traverses the version current when it was
+     * created, however the list is modified during the iteration.
+     */
+    @Test
+    public void testIteratorIsolation() {
+
+        SnapshotList<Integer> list = new SnapshotList<Integer>(Arrays.asList(
+                1, 2, 3));
+        Iterator<Integer> it = list.iterator();
+        assertEquals(Integer.valueOf(1), it.next());
+
+        list.clear();
+        list.add(9);
+
+        List<Integer> rest = new ArrayList<Integer>();
+        while (it.hasNext())
+            rest.add(it.next());
+        assertEquals(Arrays.asList(2, 3), rest);
+        assertEquals(Arrays.asList(9), list);
+    }
+}
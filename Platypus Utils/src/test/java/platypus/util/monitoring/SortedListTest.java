@@ -0,0 +1,107 @@
+package platypus.util.monitoring;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import platypus.util.monitoring.SortedList.Change;
+import platypus.util.monitoring.SortedList.SortedEvent;
+
+/**
+ * Test class for SortedList.
+ *
+ * @author Jingchen Xu
+ */
+public class SortedListTest {
+
+    /**
+     * Tests random insertions and removals against a sorted
+     * <code>ArrayList</code>, replaying the reported indices on a mirror.
+     */
+    @Test
+    public void testRandomModifications() {
+
+        SortedList<Integer> list = new SortedList<Integer>();
+        final List<Integer> mirror = new ArrayList<Integer>();
+        list.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                SortedEvent<?> event = (SortedEvent<?>) e;
+                if (event.getChange() == Change.INSERTED)
+                    mirror.add(event.getIndex(), (Integer) event.getElement());
+                else if (event.getChange() == Change.REMOVED)
+                    assertEquals(mirror.remove(event.getIndex()),
+                            event.getElement());
+                else
+                    mirror.clear();
+            }
+        });
+
+        Random rand = new Random(7);
+        List<Integer> expected = new ArrayList<Integer>();
+        for (int step = 0; step < 5000; step++) {
+            if (rand.nextInt(3) > 0 || expected.isEmpty()) {
+                int value = rand.nextInt(1000);
+                list.add(value);
+                expected.add(value);
+                Collections.sort(expected);
+            }
+            else if (rand.nextBoolean()) {
+                int index = rand.nextInt(expected.size());
+                assertEquals(expected.remove(index), list.remove(index));
+            }
+            else {
+                Integer value = rand.nextInt(1000);
+                assertEquals(expected.remove(value), list.remove(value));
+            }
+        }
+
+        assertEquals(expected, list);
+        assertEquals(expected, mirror);
+        for (int i = 0; i < expected.size(); i += 37)
+            assertEquals(expected.get(i), list.get(i));
+
+        list.clear();
+        assertTrue(mirror.isEmpty());
+    }
+
+    /**
+     * Tests rank and range queries.
+     */
+    @Test
+    public void testQueries() {
+
+        SortedList<String> list = new SortedList<String>(Arrays.asList("pear",
+                "apple", "fig", "banana", "fig", "cherry"), null);
+
+        assertEquals("apple", list.first());
+        assertEquals("pear", list.last());
+        assertEquals(3, list.lowerBound("fig"));
+        assertEquals(5, list.upperBound("fig"));
+        assertEquals(3, list.indexOf("fig"));
+        assertEquals(4, list.lastIndexOf("fig"));
+        assertFalse(list.contains("grape"));
+        assertEquals(Arrays.asList("banana", "cherry", "fig", "fig"),
+                list.range("b", "g"));
+        assertEquals(4, list.countRange("b", "g"));
+        assertEquals(0, list.countRange("x", "a"));
+
+        Iterator<String> it = list.iterator();
+        while (it.hasNext()) {
+            if (it.next().startsWith("f"))
+                it.remove();
+        }
+        assertEquals(Arrays.asList("apple", "banana", "cherry", "pear"), list);
+    }
+}